@@ -0,0 +1,115 @@
+package com.harry.jobbench;
+
+import com.harry.jobservice.JobserviceApplication;
+import com.harry.jobworker.JobworkerApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Throwaway Postgres and Redis containers plus in-process jobservice / jobworker contexts
+// Both applications are started from their own jars on the classpath,
+// each with its own bench-*.yml (their application.yml files would shadow each other)
+// One environment per JVM, JMH forks get a fresh one each
+
+public final class BenchEnvironment {
+    private static final String DB = "jobdb";
+    private static final String USER = "jobuser";
+    private static final String PASSWORD = "jobpass";
+
+    private static final String INSERT_PENDING_SQL = """
+        INSERT INTO jobs (id, type, payload, status, attempts, priority, created_at, available_at)
+        SELECT gen_random_uuid()::text, 'DEFAULT', '', 'PENDING', 0, 'NORMAL', now(), now()
+        FROM generate_series(1, ?)
+        RETURNING id
+        """;
+
+    private static BenchEnvironment instance;
+
+    private final GenericContainer<?> postgres;
+    private final GenericContainer<?> redis;
+
+    private BenchEnvironment() {
+        postgres = new GenericContainer<>("postgres:16")
+                .withEnv("POSTGRES_DB", DB)
+                .withEnv("POSTGRES_USER", USER)
+                .withEnv("POSTGRES_PASSWORD", PASSWORD)
+                .withExposedPorts(5432)
+                .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*", 2)); // The first one is the init run
+        redis = new GenericContainer<>("redis:7")
+                .withExposedPorts(6379)
+                .waitingFor(Wait.forLogMessage(".*Ready to accept connections.*", 1));
+        postgres.start();
+        redis.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            redis.stop();
+            postgres.stop();
+        }));
+    }
+
+    public static synchronized BenchEnvironment get() {
+        if (instance == null) {
+            instance = new BenchEnvironment();
+        }
+        return instance;
+    }
+
+    public String jdbcUrl() {
+        return "jdbc:postgresql://" + postgres.getHost() + ":" + postgres.getMappedPort(5432) + "/" + DB + "?reWriteBatchedInserts=true";
+    }
+
+    // jobservice on a random port, creates the schema, so start it before any worker
+    public ConfigurableApplicationContext startJobservice(Map<String, Object> overrides) {
+        Map<String, Object> properties = connectionProperties();
+        properties.put("spring.config.name", "bench-jobservice");
+        properties.put("server.port", 0);
+        properties.putAll(overrides);
+        return new SpringApplicationBuilder(JobserviceApplication.class)
+                .properties(properties)
+                .run();
+    }
+
+    // jobworker without a web server, worker.consumers=0 keeps it from consuming so benchmarks can drive it
+    public ConfigurableApplicationContext startJobworker(Map<String, Object> overrides) {
+        Map<String, Object> properties = connectionProperties();
+        properties.put("spring.config.name", "bench-jobworker");
+        properties.putAll(overrides);
+        return new SpringApplicationBuilder(JobworkerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .run();
+    }
+
+    // Insert count PENDING jobs straight into the table (no outbox rows, nothing is queued), returns their IDs
+    public static List<String> insertPendingJobs(JdbcTemplate jdbcTemplate, int count) {
+        return jdbcTemplate.queryForList(INSERT_PENDING_SQL, String.class, count);
+    }
+
+    // Start every benchmark iteration from empty tables and queues, every table the migrations create for jobs included
+    public static void reset(JdbcTemplate jdbcTemplate, StringRedisTemplate redisTemplate) {
+        jdbcTemplate.execute("TRUNCATE jobs, job_outbox, job_dependencies, job_payloads, job_attempts, job_results, jobs_archive");
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+    }
+
+    private Map<String, Object> connectionProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", jdbcUrl());
+        properties.put("spring.datasource.username", USER);
+        properties.put("spring.datasource.password", PASSWORD);
+        properties.put("spring.data.redis.host", redis.getHost());
+        properties.put("spring.data.redis.port", redis.getMappedPort(6379));
+        return properties;
+    }
+
+}
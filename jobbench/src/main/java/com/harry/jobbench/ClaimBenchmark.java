@@ -0,0 +1,76 @@
+package com.harry.jobbench;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.jobs.JobRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Claiming jobs in Postgres, the statement every consumed job goes through
+//   claimJobs        - redis / stream backends, IDs popped from Redis flipped PENDING -> IN_PROGRESS with RETURNING *
+//   claimPendingJobs - postgres backend, SKIP LOCKED claim of the oldest ready rows of one lane
+// Each iteration claims OPS batches from a freshly inserted pool, score = time per iteration
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = ClaimBenchmark.OPS)
+@Measurement(iterations = 5, batchSize = ClaimBenchmark.OPS)
+@Fork(1)
+public class ClaimBenchmark {
+    static final int OPS = 1000; // Claims per iteration
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext jobservice;
+    private ConfigurableApplicationContext jobworker;
+    private JobRepository jobRepository;
+    private JdbcTemplate jdbcTemplate;
+    private StringRedisTemplate redisTemplate;
+
+    private List<String> pool; // PENDING job IDs for this iteration
+    private int next;
+
+    @Setup(Level.Trial)
+    public void start() {
+        BenchEnvironment environment = BenchEnvironment.get();
+        jobservice = environment.startJobservice(Map.of());
+        jobworker = environment.startJobworker(Map.of());
+        jobRepository = jobworker.getBean(JobRepository.class);
+        jdbcTemplate = jobservice.getBean(JdbcTemplate.class);
+        redisTemplate = jobservice.getBean(StringRedisTemplate.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillPool() {
+        BenchEnvironment.reset(jdbcTemplate, redisTemplate);
+        pool = BenchEnvironment.insertPendingJobs(jdbcTemplate, OPS * batchSize);
+        next = 0;
+    }
+
+    @Benchmark
+    public List<JobEntity> claimJobs() {
+        List<String> ids = pool.subList(next, next + batchSize);
+        next += batchSize;
+        return jobRepository.claimJobs(ids, "bench", 30_000);
+    }
+
+    @Benchmark
+    public List<JobEntity> claimPendingJobs() {
+        return jobRepository.claimPendingJobs(JobPriority.NORMAL.name(), batchSize, "bench", 30_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        jobworker.close();
+        jobservice.close();
+    }
+
+}
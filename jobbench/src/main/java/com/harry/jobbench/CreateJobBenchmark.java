@@ -0,0 +1,96 @@
+package com.harry.jobbench;
+
+import com.harry.jobservice.jobs.JobSubmissionService;
+import com.harry.jobservice.jobs.dto.CreateJobRequest;
+import com.harry.jobservice.jobs.dto.CreateJobResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Job creation in jobservice
+//   submit     - JobSubmissionService.submit, the insert transaction behind POST /jobs and POST /jobs/batch
+//   createHttp - the whole POST /jobs/batch request over HTTP, JSON and MVC included
+// The outbox relay keeps draining to Redis in the background, as it would in production
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CreateJobBenchmark {
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext jobservice;
+    private JobSubmissionService jobSubmissionService;
+    private JdbcTemplate jdbcTemplate;
+    private StringRedisTemplate redisTemplate;
+
+    private List<CreateJobRequest> requests;
+    private HttpClient httpClient;
+    private HttpRequest httpRequest;
+
+    @Setup(Level.Trial)
+    public void start() {
+        jobservice = BenchEnvironment.get().startJobservice(Map.of());
+        jobSubmissionService = jobservice.getBean(JobSubmissionService.class);
+        jdbcTemplate = jobservice.getBean(JdbcTemplate.class);
+        redisTemplate = jobservice.getBean(StringRedisTemplate.class);
+
+        requests = new ArrayList<>(batchSize);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < batchSize; i++) {
+            CreateJobRequest request = new CreateJobRequest();
+            request.type = "DEFAULT";
+            request.payload = "bench";
+            requests.add(request);
+            json.append(i == 0 ? "" : ",").append("{\"type\":\"DEFAULT\",\"payload\":\"bench\"}");
+        }
+        json.append("]");
+
+        String port = jobservice.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newHttpClient();
+        httpRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/jobs/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        BenchEnvironment.reset(jdbcTemplate, redisTemplate); // Keep table and queue sizes comparable between iterations
+    }
+
+    @Benchmark
+    public List<CreateJobResponse> submit() {
+        return jobSubmissionService.submit(requests);
+    }
+
+    @Benchmark
+    public int createHttp() throws IOException, InterruptedException {
+        HttpResponse<Void> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST /jobs/batch returned " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        jobservice.close();
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.harry.jobbench;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end load test: N jobs through POST /jobs/batch, the outbox relay, the queue and the workers
+// Starts Postgres and Redis containers, one jobservice and --workers jobworker contexts in this JVM,
+// submits every job, waits until all are COMPLETED and prints throughput and latency percentiles
+//
+//   mvn compile exec:exec -Dbench.main=com.harry.jobbench.PipelineLoadTest -Dbench.args="jobs=50000 backend=postgres"
+//
+// Options (key=value): jobs (10000), batch (500), workers (1), consumers (1), concurrency (16),
+//                      worker-batch (10), backend (redis | stream | postgres), shards (1), work (0ms), timeout-seconds (600)
+
+public class PipelineLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int jobs = Integer.parseInt(options.getOrDefault("jobs", "10000"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "500"));
+        int workers = Integer.parseInt(options.getOrDefault("workers", "1"));
+        String backend = options.getOrDefault("backend", "redis");
+        String shards = options.getOrDefault("shards", "1");
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("timeout-seconds", "600")));
+
+        BenchEnvironment environment = BenchEnvironment.get();
+        ConfigurableApplicationContext jobservice = environment.startJobservice(Map.of("queue.backend", backend, "queue.shards", shards));
+        JdbcTemplate jdbcTemplate = jobservice.getBean(JdbcTemplate.class);
+        BenchEnvironment.reset(jdbcTemplate, jobservice.getBean(StringRedisTemplate.class));
+
+        List<ConfigurableApplicationContext> workerContexts = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Map<String, Object> overrides = new HashMap<>();
+            overrides.put("worker.id", "bench-worker-" + i);
+            overrides.put("worker.queue-backend", backend);
+            overrides.put("worker.queue-shards", shards);
+            overrides.put("worker.consumers", options.getOrDefault("consumers", "1"));
+            overrides.put("worker.concurrency", options.getOrDefault("concurrency", "16"));
+            overrides.put("worker.batch-size", options.getOrDefault("worker-batch", "10"));
+            overrides.put("worker.simulated-work", options.getOrDefault("work", "0ms"));
+            overrides.put("worker.retry-promotion-min-interval", "50ms");
+            overrides.put("worker.retry-promotion-max-interval", "1s");
+            workerContexts.add(environment.startJobworker(overrides));
+        }
+
+        String port = jobservice.getEnvironment().getProperty("local.server.port");
+        URI batchUri = URI.create("http://localhost:" + port + "/jobs/batch");
+        HttpClient httpClient = HttpClient.newHttpClient();
+        String body = batchBody(batch);
+
+        System.out.println("Submitting " + jobs + " jobs in batches of " + batch + " (" + backend + " backend, " + shards + " shards, " + workers + " workers)");
+        long[] submitNanos = new long[(jobs + batch - 1) / batch];
+        long start = System.nanoTime();
+        for (int sent = 0, request = 0; sent < jobs; sent += batch, request++) {
+            String requestBody = (jobs - sent < batch) ? batchBody(jobs - sent) : body;
+            long requestStart = System.nanoTime();
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(batchUri)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            submitNanos[request] = System.nanoTime() - requestStart;
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("POST /jobs/batch returned " + response.statusCode());
+            }
+        }
+        long submitted = System.nanoTime();
+
+        long completed = 0;
+        while (completed < jobs) {
+            if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > timeoutMillis) {
+                System.out.println("Timed out with " + completed + " of " + jobs + " jobs completed");
+                break;
+            }
+            Thread.sleep(100);
+            completed = jdbcTemplate.queryForObject("SELECT count(*) FROM jobs WHERE status = 'COMPLETED'", Long.class);
+        }
+        long finished = System.nanoTime();
+
+        double submitSeconds = (submitted - start) / 1e9;
+        double totalSeconds = (finished - start) / 1e9;
+        System.out.printf("Submit:     %.0f jobs/s (%.2fs)%n", jobs / submitSeconds, submitSeconds);
+        System.out.printf("End to end: %.0f jobs/s (%d jobs in %.2fs)%n", completed / totalSeconds, completed, totalSeconds);
+        printPercentiles("POST /jobs/batch", submitNanos);
+        for (int i = 0; i < workerContexts.size(); i++) {
+            MeterRegistry registry = workerContexts.get(i).getBean(MeterRegistry.class);
+            printTimers("worker " + i, registry, "jobs.queue.wait");
+            printTimers("worker " + i, registry, "jobs.claim");
+            printTimers("worker " + i, registry, "jobs.execution");
+        }
+
+        for (ConfigurableApplicationContext context : workerContexts) {
+            context.close();
+        }
+        jobservice.close();
+        System.exit(0); // Container shutdown hooks run from here
+    }
+
+    private static String batchBody(int size) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"type\":\"DEFAULT\",\"payload\":\"load-test\"}");
+        }
+        return json.append("]").toString();
+    }
+
+    private static void printPercentiles(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-40s p50 %8.2fms  p95 %8.2fms  p99 %8.2fms%n", label,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.95) / 1e6, percentile(sorted, 0.99) / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // Client-side percentiles configured in bench-jobworker.yml
+    private static void printTimers(String label, MeterRegistry registry, String name) {
+        for (Timer timer : registry.find(name).timers()) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            StringBuilder line = new StringBuilder(String.format("%-40s", label + " " + name + " " + timer.getId().getTags()));
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                line.append(String.format(" p%-3.0f %8.2fms ", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+            }
+            line.append(" (").append(snapshot.count()).append(")");
+            System.out.println(line);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.harry.jobbench;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.worker.RedisJobWorker;
+import com.harry.jobworker.worker.WorkerProperties;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Bookkeeping of one successful attempt in RedisJobWorker.processJobClaimed with worker.simulated-work=0, so only the overhead is left:
+// the status cache write, the guarded COMPLETED transition through CompletionBatcher (the job's thread waits for its batch
+// to commit), acknowledge, metrics and the queued job_attempts row
+// Each iteration processes OPS freshly inserted jobs, score = time per iteration
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = ProcessJobBenchmark.OPS)
+@Measurement(iterations = 5, batchSize = ProcessJobBenchmark.OPS)
+@Fork(1)
+public class ProcessJobBenchmark {
+    static final int OPS = 1000; // Jobs processed per iteration
+
+    private ConfigurableApplicationContext jobservice;
+    private ConfigurableApplicationContext jobworker;
+    private RedisJobWorker worker;
+    private JobRepository jobRepository;
+    private JdbcTemplate jdbcTemplate;
+    private StringRedisTemplate redisTemplate;
+    private String workerId; // Completions are guarded by the lease owner, so the pool is claimed in the worker's name
+
+    private List<JobEntity> jobs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void start() {
+        BenchEnvironment environment = BenchEnvironment.get();
+        jobservice = environment.startJobservice(Map.of());
+        jobworker = environment.startJobworker(Map.of());
+        worker = jobworker.getBean(RedisJobWorker.class);
+        workerId = jobworker.getBean(WorkerProperties.class).getId();
+        jobRepository = jobworker.getBean(JobRepository.class);
+        jdbcTemplate = jobservice.getBean(JdbcTemplate.class);
+        redisTemplate = jobservice.getBean(StringRedisTemplate.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void claimPool() {
+        BenchEnvironment.reset(jdbcTemplate, redisTemplate);
+        jobs = jobRepository.claimJobs(BenchEnvironment.insertPendingJobs(jdbcTemplate, OPS), workerId, 30_000); // Claimed like a consumer would
+        next = 0;
+    }
+
+    @Benchmark
+    public void processJobClaimed() {
+        worker.processJobClaimed(jobs.get(next++));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        jobworker.close();
+        jobservice.close();
+    }
+
+}
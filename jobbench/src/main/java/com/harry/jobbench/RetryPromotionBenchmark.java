@@ -0,0 +1,88 @@
+package com.harry.jobbench;
+
+import com.harry.jobworker.queue.JobQueue;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// One RetryPromoter run (JobQueue.promoteDueRetries) with the list backend
+//   due       - retries due right now, moved to queue:jobs by the promotion script
+//   scheduled - entries due far in the future sharing the ZSET, they should not change the cost
+// Each invocation starts from an empty queue and a freshly filled due set
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RetryPromotionBenchmark {
+    private static final String RETRY_ZSET = "retry:jobs";
+    private static final String QUEUE_KEY = "queue:jobs";
+
+    @Param({"100", "1000", "10000"})
+    public int due;
+
+    @Param({"0", "1000000"})
+    public int scheduled;
+
+    private ConfigurableApplicationContext jobservice;
+    private ConfigurableApplicationContext jobworker;
+    private JobQueue jobQueue;
+    private StringRedisTemplate redisTemplate;
+    private Set<TypedTuple<String>> dueEntries;
+
+    @Setup(Level.Trial)
+    public void start() {
+        BenchEnvironment environment = BenchEnvironment.get();
+        jobservice = environment.startJobservice(Map.of());
+        jobworker = environment.startJobworker(Map.of());
+        jobQueue = jobworker.getBean(JobQueue.class);
+        redisTemplate = jobworker.getBean(StringRedisTemplate.class);
+        BenchEnvironment.reset(jobservice.getBean(JdbcTemplate.class), redisTemplate);
+
+        double farFuture = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365);
+        Set<TypedTuple<String>> future = new HashSet<>();
+        for (int i = 0; i < scheduled; i++) {
+            future.add(TypedTuple.of(UUID.randomUUID().toString(), farFuture + i));
+            if (future.size() == 10_000) {
+                redisTemplate.opsForZSet().add(RETRY_ZSET, future);
+                future.clear();
+            }
+        }
+        if (!future.isEmpty()) {
+            redisTemplate.opsForZSet().add(RETRY_ZSET, future);
+        }
+
+        dueEntries = new HashSet<>(due);
+        for (int i = 0; i < due; i++) {
+            dueEntries.add(TypedTuple.of(UUID.randomUUID().toString(), (double) i)); // Scores in 1970, always due
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fillDue() {
+        redisTemplate.delete(QUEUE_KEY);
+        redisTemplate.opsForZSet().add(RETRY_ZSET, dueEntries);
+    }
+
+    @Benchmark
+    public long promoteDueRetries() {
+        return jobQueue.promoteDueRetries();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        jobworker.close();
+        jobservice.close();
+    }
+
+}
@@ -2,7 +2,9 @@ package com.harry.jobservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
+@ConfigurationPropertiesScan // Binds the outbox.*, queue.*, status-cache.*, idempotency.*, events.*, archive.*, payload.* and results.* settings in application.yml
 @SpringBootApplication
 public class JobserviceApplication {
 
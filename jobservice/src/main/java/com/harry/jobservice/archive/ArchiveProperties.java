@@ -0,0 +1,56 @@
+package com.harry.jobservice.archive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Settings for the job archiver, bound from the "archive.*" keys in application.yml
+
+@ConfigurationProperties(prefix = "archive")
+public class ArchiveProperties {
+
+    private boolean enabled = true; // false leaves every finished job in the jobs table
+    private Duration interval = Duration.ofMinutes(1); // Pause between archiver runs
+    private int batchSize = 10_000; // Finished jobs moved to jobs_archive per statement
+    private Duration completedRetention = Duration.ofDays(7); // COMPLETED jobs older than this (by created_at) are archived
+    private Duration failedRetention = Duration.ofDays(30); // FAILED jobs older than this are archived, they leave the DLQ with it
+    private Duration historyRetention = Duration.ofDays(365); // Archive partitions entirely older than this are dropped, 0 keeps them forever
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    public Duration getInterval() {
+        return interval;
+    }
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+    public int getBatchSize() {
+        return batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    public Duration getCompletedRetention() {
+        return completedRetention;
+    }
+    public void setCompletedRetention(Duration completedRetention) {
+        this.completedRetention = completedRetention;
+    }
+    public Duration getFailedRetention() {
+        return failedRetention;
+    }
+    public void setFailedRetention(Duration failedRetention) {
+        this.failedRetention = failedRetention;
+    }
+    public Duration getHistoryRetention() {
+        return historyRetention;
+    }
+    public void setHistoryRetention(Duration historyRetention) {
+        this.historyRetention = historyRetention;
+    }
+
+}
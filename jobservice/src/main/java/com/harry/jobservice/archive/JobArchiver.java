@@ -0,0 +1,286 @@
+package com.harry.jobservice.archive;
+
+import com.harry.jobservice.jobs.JobStatus;
+import com.harry.jobservice.jobs.dto.JobStatusResponse;
+import com.harry.jobservice.results.ResultProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+// Keeps the jobs table down to live work and recent history by moving old finished jobs into jobs_archive
+// COMPLETED jobs older than archive.completed-retention and FAILED jobs older than archive.failed-retention
+// are moved archive.batch-size at a time, each batch is one DELETE ... RETURNING feeding an INSERT, so a row is never in both tables
+// jobs_archive is partitioned by month of created_at (jobs_archive_YYYY_MM), the partitions a batch needs are created first,
+// and months entirely older than archive.history-retention are dropped whole instead of deleted row by row
+// Externally stored payloads stay in job_payloads while their job is archived and are deleted with its partition
+// A FAILED job graph parent that still has job_dependencies rows stays in jobs: its children are WAITING on it and
+// requeuing it from the DLQ is the only way to continue the graph, which an archived job no longer allows
+// Each run also deletes job_results rows past expires_at and job_attempts rows older than results.attempt-retention,
+// results.purge-batch-size rows per statement so no run holds a long transaction
+// Batches lock their rows with SKIP LOCKED and partition changes hold an advisory lock, so every jobservice instance can run it
+// Metrics: archive.move (timer, status), archive.moved (counter, status), archive.partitions.dropped (counter)
+// and archive.purged (counter, table)
+
+@Component
+public class JobArchiver implements CommandLineRunner {
+
+    // Oldest finished jobs of one status first, served by jobs_finished_created_idx
+    // Parents with edges left are skipped, the probe is the job_dependencies primary key (parent_id first)
+    private static final String MOVE_SQL = """
+        WITH moved AS (
+            DELETE FROM jobs
+            WHERE id IN (
+                SELECT id FROM jobs
+                WHERE status = ? AND created_at < ?
+                  AND NOT EXISTS (SELECT 1 FROM job_dependencies d WHERE d.parent_id = jobs.id)
+                ORDER BY created_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING id, type, payload, status, attempts, priority, created_at, available_at, idempotency_key, payload_external
+        )
+        INSERT INTO jobs_archive (id, type, payload, status, attempts, priority, created_at, available_at, idempotency_key, payload_external)
+        SELECT id, type, payload, status, attempts, priority, created_at, available_at, idempotency_key, payload_external FROM moved
+        """;
+
+    private static final String OLDEST_SQL = "SELECT min(created_at) FROM jobs WHERE status = ? AND created_at < ?";
+
+    private static final String PARTITIONS_SQL = """
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'jobs_archive'::regclass
+        """;
+
+    private static final String STATUS_SQL = """
+        SELECT id, type, status, attempts, priority, created_at, available_at
+        FROM jobs_archive WHERE id = ?
+        LIMIT 1
+        """;
+
+    // Expired results first found through job_results_expires_idx
+    private static final String PURGE_RESULTS_SQL = """
+        DELETE FROM job_results
+        WHERE job_id IN (
+            SELECT job_id FROM job_results
+            WHERE expires_at < now()
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+        )
+        """;
+
+    // Bounded by the BRIN index on started_at
+    private static final String PURGE_ATTEMPTS_SQL = """
+        DELETE FROM job_attempts
+        WHERE id IN (
+            SELECT id FROM job_attempts
+            WHERE started_at < ?
+            LIMIT ?
+        )
+        """;
+
+    private static final String PARTITION_PREFIX = "jobs_archive_";
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final long PARTITION_LOCK = 0x6A6F62735F617263L; // pg_advisory_xact_lock key held while partitions are created or dropped
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ArchiveProperties properties;
+    private final ResultProperties resultProperties;
+    private final MeterRegistry meterRegistry;
+    private final Counter partitionsDropped;
+
+    private volatile boolean running = true;
+    private Thread archiverThread;
+
+    public JobArchiver(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, ArchiveProperties properties,
+                       ResultProperties resultProperties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.resultProperties = resultProperties;
+        this.meterRegistry = meterRegistry;
+        this.partitionsDropped = Counter.builder("archive.partitions.dropped").description("Monthly jobs_archive partitions dropped").register(meterRegistry);
+    }
+
+    @Override
+    public void run(String... args) {
+        if (properties.isEnabled()) {
+            archiverThread = Thread.ofPlatform().name("job-archiver").start(this::archiveLoop);
+        }
+    }
+
+    private void archiveLoop() {
+        while (running) {
+            try {
+                archive();
+                Thread.sleep(properties.getInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.out.println("Job archiver error: " + e.getMessage());
+                try {
+                    Thread.sleep(properties.getInterval().toMillis()); // Nothing is lost, the rows are picked up on the next run
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // One archiver run, returns how many jobs were moved
+    public int archive() {
+        Instant now = Instant.now();
+        int moved = archive(JobStatus.COMPLETED, now.minus(properties.getCompletedRetention()))
+                + archive(JobStatus.FAILED, now.minus(properties.getFailedRetention()));
+        dropExpiredPartitions(now);
+        purgeHistory(now);
+        return moved;
+    }
+
+    // Delete expired results and old attempt rows, batch by batch
+    private void purgeHistory(Instant now) {
+        int batchSize = resultProperties.getPurgeBatchSize();
+        purge("job_results", () -> jdbcTemplate.update(PURGE_RESULTS_SQL, batchSize));
+        if (!resultProperties.getAttemptRetention().isZero()) {
+            Timestamp before = Timestamp.from(now.minus(resultProperties.getAttemptRetention()));
+            purge("job_attempts", () -> jdbcTemplate.update(PURGE_ATTEMPTS_SQL, before, batchSize));
+        }
+    }
+
+    private void purge(String table, IntSupplier batch) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = batch.getAsInt();
+            total += deleted;
+        } while (running && deleted == resultProperties.getPurgeBatchSize());
+        if (total > 0) {
+            meterRegistry.counter("archive.purged", "table", table).increment(total);
+            System.out.println("Purged " + total + " rows from " + table);
+        }
+    }
+
+    // Move every job of the status created before cutoff, batch by batch
+    private int archive(JobStatus status, Instant cutoff) {
+        Timestamp before = Timestamp.from(cutoff);
+        Timestamp oldest = jdbcTemplate.queryForObject(OLDEST_SQL, Timestamp.class, status.name(), before);
+        if (oldest == null) {
+            return 0; // Nothing old enough
+        }
+        // created_at never changes, so no row older than oldest can show up before the batches below
+        createPartitions(month(oldest.toInstant()), month(cutoff));
+
+        Timer moveTimer = Timer.builder("archive.move").tag("status", status.name()).publishPercentileHistogram().register(meterRegistry);
+        int total = 0;
+        int moved;
+        do {
+            long start = System.nanoTime();
+            moved = jdbcTemplate.update(MOVE_SQL, status.name(), before, properties.getBatchSize());
+            moveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            total += moved;
+        } while (running && moved == properties.getBatchSize()); // A full batch means there is more
+
+        if (total > 0) {
+            meterRegistry.counter("archive.moved", "status", status.name()).increment(total);
+            System.out.println("Archived " + total + " " + status + " jobs created before " + cutoff);
+        }
+        return total;
+    }
+
+    // Create the monthly partitions from first to last, both included, that do not exist yet
+    private void createPartitions(YearMonth first, YearMonth last) {
+        transactionTemplate.executeWithoutResult(status -> {
+            lockPartitions();
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF jobs_archive"
+                        + " FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00+00') TO ('" + month.plusMonths(1).atDay(1) + " 00:00:00+00')");
+            }
+        });
+    }
+
+    // Drop the partitions whose whole month is older than archive.history-retention
+    private void dropExpiredPartitions(Instant now) {
+        if (properties.getHistoryRetention().isZero()) {
+            return; // Keep the archive forever
+        }
+        YearMonth oldestKept = month(now.minus(properties.getHistoryRetention()));
+        transactionTemplate.executeWithoutResult(status -> {
+            lockPartitions();
+            List<String> partitions = jdbcTemplate.queryForList(PARTITIONS_SQL, String.class);
+            for (String partition : partitions) {
+                YearMonth month = partitionMonth(partition);
+                if (month != null && month.isBefore(oldestKept)) {
+                    jdbcTemplate.update("DELETE FROM job_payloads WHERE job_id IN (SELECT id FROM " + partition + " WHERE payload_external)");
+                    jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                    partitionsDropped.increment();
+                    System.out.println("Dropped archive partition " + partition);
+                }
+            }
+        });
+    }
+
+    // Status of an archived job for GET /jobs/{id}, every partition's id index is probed since created_at is unknown
+    public Optional<JobStatusResponse> findStatus(String jobId) {
+        return jdbcTemplate.query(STATUS_SQL, (rs, rowNum) -> new JobStatusResponse(
+                        rs.getString("id"),
+                        rs.getString("type"),
+                        rs.getString("status"),
+                        rs.getInt("attempts"),
+                        rs.getString("priority") == null ? "NORMAL" : rs.getString("priority"),
+                        rs.getTimestamp("created_at").toInstant(),
+                        rs.getTimestamp("available_at") == null ? null : rs.getTimestamp("available_at").toInstant()),
+                jobId).stream().findFirst();
+    }
+
+    // Serializes partition changes across jobservice instances until the transaction ends
+    private void lockPartitions() {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", rs -> null, PARTITION_LOCK);
+    }
+
+    private static YearMonth month(Instant instant) {
+        return YearMonth.from(instant.atZone(ZoneOffset.UTC));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_MONTH);
+    }
+
+    // The month a jobs_archive_YYYY_MM partition holds, null for tables not named by the archiver
+    private static YearMonth partitionMonth(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_MONTH);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (archiverThread != null) {
+            archiverThread.interrupt(); // Wakes it from the pause between runs, a batch in progress finishes first
+            archiverThread.join(5000);
+        }
+    }
+
+}
@@ -1,60 +1,79 @@
 package com.harry.jobservice.dlq;
 
-import com.harry.jobservice.jobs.JobEntity;
-import com.harry.jobservice.jobs.JobRepository;
-import com.harry.jobservice.jobs.JobStatus;
+import com.harry.jobservice.dlq.dto.DeadJobResponse;
+import com.harry.jobservice.dlq.dto.DlqPageResponse;
+import com.harry.jobservice.dlq.dto.DlqRequeueRequest;
+import com.harry.jobservice.dlq.dto.DlqRequeueResponse;
+import com.harry.jobservice.jobs.JobSubmissionService;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
 @RestController
 @RequestMapping("/dlq")
 public class DlqController {
-    private static final String DLQ_KEY = "deadletter:jobs";
-    private static final String QUEUE_KEY = "queue:jobs";
+    private static final int MAX_PAGE_SIZE = 1000; // Upper bound on ?limit= for GET /dlq
 
-    private final JobRepository jobRepository;
+    private final DlqService dlqService;
+    private final JobSubmissionService jobSubmissionService;
     private final StringRedisTemplate redisTemplate;
 
-    public DlqController(JobRepository jobRepository, StringRedisTemplate redisTemplate) {
-        this.jobRepository = jobRepository;
+    public DlqController(DlqService dlqService, JobSubmissionService jobSubmissionService, StringRedisTemplate redisTemplate) {
+        this.dlqService = dlqService;
+        this.jobSubmissionService = jobSubmissionService;
         this.redisTemplate = redisTemplate;
     }
 
-    // GET /dlq - Retrieve all jobs in the dead-letter queue
+    // GET /dlq?after=<cursor>&limit=100&type=<type> - One page of dead-lettered jobs
+    // Pass nextCursor from the response as ?after= to get the next page, it is null on the last one
     @GetMapping
-    public ResponseEntity<List<JobEntity>> getAllDlqJobs() {
-        // Fetch all job IDs from the dead-letter queue in Redis (0 to -1 gets all elements)
-        List<String> jobIds = redisTemplate.opsForList().range(DLQ_KEY, 0, -1);
-        List<JobEntity> jobs = jobRepository.findAllById(jobIds);
-        if(jobIds == null || jobIds.isEmpty()) {
-            return ResponseEntity.ok().body(List.of());
+    public ResponseEntity<DlqPageResponse> getDlqJobs(@RequestParam(defaultValue = "") String after,
+                                                      @RequestParam(defaultValue = "100") int limit,
+                                                      @RequestParam(required = false) String type) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok().body(jobs);
+        List<DeadJobResponse> jobs = dlqService.page(after, type, limit);
+        String nextCursor = jobs.size() == limit ? jobs.get(jobs.size() - 1).id : null;
+        return ResponseEntity.ok(new DlqPageResponse(jobs, nextCursor));
+    }
+
+    // GET /dlq/export?type=<type> - Every dead-lettered job as newline-delimited JSON, streamed page by page
+    @GetMapping(path = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportDlqJobs(@RequestParam(required = false) String type) {
+        StreamingResponseBody body = out -> dlqService.export(type, out);
+        return ResponseEntity.ok(body);
+    }
+
+    // POST /dlq/requeue - Requeue dead-lettered jobs in bulk, by {"ids": [...]}, {"type": "..."} or {"all": true}
+    // Attempts are reset to 0, like the single-job requeue below
+    @PostMapping("/requeue")
+    public ResponseEntity<DlqRequeueResponse> requeueJobs(@RequestBody DlqRequeueRequest request) {
+        boolean byIds = request.ids != null && !request.ids.isEmpty();
+        boolean byType = request.type != null && !request.type.isEmpty();
+        int selectors = (byIds ? 1 : 0) + (byType ? 1 : 0) + (request.all ? 1 : 0);
+        if (selectors != 1) {
+            return ResponseEntity.badRequest().build(); // Exactly one way of choosing the jobs, "all" must be asked for explicitly
+        }
+        long requeued = dlqService.requeue(byIds ? request.ids : null, byType ? request.type : null);
+        return ResponseEntity.ok(new DlqRequeueResponse(requeued));
     }
 
     // POST /dlq/{id}/requeue - Requeue a job from the dead-letter queue back to the main queue
     @PostMapping("/{id}/requeue")
     public ResponseEntity<String> requeueJob(@PathVariable String id) {
-        // Check if the job exists in the dead-letter queue
-        JobEntity job = jobRepository.findById(id).orElse(null);
-        if (job == null) {
+        // Reset job status to PENDING and attempts to 0, and queue it through the outbox
+        if (!jobSubmissionService.requeue(id, true)) {
             return ResponseEntity.notFound().build();
         }
 
-        // Reset job status to PENDING
-        job.setStatus(JobStatus.PENDING);
-        job.setAttempts(0);
-        jobRepository.save(job);
-
-        // Move job ID from dead-letter queue to main queue in Redis
-        redisTemplate.opsForList().remove(DLQ_KEY, 1, id);//remove one occurrence of id from DLQ
-
-        redisTemplate.opsForList().rightPush(QUEUE_KEY, id);//add id to main queue
+        // Remove the job ID from the dead-letter queue in Redis
+        redisTemplate.opsForList().remove(DlqService.DLQ_KEY, 1, id);//remove one occurrence of id from DLQ
 
         return ResponseEntity.ok("Job requeued successfully.");
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package com.harry.jobservice.dlq;
+
+import com.harry.jobservice.dlq.dto.DeadJobResponse;
+import com.harry.jobservice.jobs.JobBatchWriter;
+import com.harry.jobservice.jobs.JobRepository;
+import com.harry.jobservice.jobs.JobStatusCache;
+import com.harry.jobservice.outbox.OutboxRelay;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Reads and requeues the dead-letter queue in bounded batches, however many jobs it holds
+// Dead-lettered jobs are the FAILED rows in Postgres, listing and export page through them by id (keyset, no OFFSET)
+// deadletter:jobs in Redis mirrors them for the queue depth metrics and is pruned after a bulk requeue
+
+@Service
+public class DlqService {
+    static final String DLQ_KEY = "deadletter:jobs";
+    private static final int BATCH_SIZE = 1000; // Rows per export page, per requeue UPDATE and per pruned list chunk
+
+    private final JobRepository jobRepository;
+    private final JobBatchWriter jobBatchWriter;
+    private final OutboxRelay outboxRelay;
+    private final JobStatusCache jobStatusCache;
+    private final StringRedisTemplate redisTemplate;
+    private final JsonMapper jsonMapper;
+
+    public DlqService(JobRepository jobRepository, JobBatchWriter jobBatchWriter, OutboxRelay outboxRelay,
+                      JobStatusCache jobStatusCache, StringRedisTemplate redisTemplate, JsonMapper jsonMapper) {
+        this.jobRepository = jobRepository;
+        this.jobBatchWriter = jobBatchWriter;
+        this.outboxRelay = outboxRelay;
+        this.jobStatusCache = jobStatusCache;
+        this.redisTemplate = redisTemplate;
+        this.jsonMapper = jsonMapper;
+    }
+
+    // Up to limit dead-lettered jobs with an id after the cursor ("" for the first page)
+    public List<DeadJobResponse> page(String after, String type, int limit) {
+        PageRequest page = PageRequest.ofSize(limit);
+        return type == null
+                ? jobRepository.findFailedAfter(after, page)
+                : jobRepository.findFailedOfTypeAfter(type, after, page);
+    }
+
+    // Writes every dead-lettered job as one JSON line, one page in memory at a time
+    public void export(String type, OutputStream out) throws IOException {
+        String after = "";
+        List<DeadJobResponse> jobs;
+        do {
+            jobs = page(after, type, BATCH_SIZE);
+            for (DeadJobResponse job : jobs) {
+                out.write(jsonMapper.writeValueAsBytes(job));
+                out.write('\n');
+            }
+            out.flush(); // Client sees progress page by page
+            if (!jobs.isEmpty()) {
+                after = jobs.get(jobs.size() - 1).id;
+            }
+        } while (jobs.size() == BATCH_SIZE);
+    }
+
+    // Requeue dead-lettered jobs: the listed IDs, every one of a type, or all of them (ids and type both null)
+    // Each batch of BATCH_SIZE is one set-based UPDATE (attempts reset) plus its outbox rows, committed on its own
+    // Returns the number of jobs requeued
+    public long requeue(List<String> ids, String type) {
+        long requeued = 0;
+        String after = "";
+        List<String> batch;
+        do {
+            batch = jobBatchWriter.requeueFailed(after, type, ids, BATCH_SIZE);
+            requeued += batch.size();
+            for (String id : batch) {
+                if (id.compareTo(after) > 0) {
+                    after = id; // RETURNING has no order, the cursor is the largest ID of the batch
+                }
+            }
+            if (!batch.isEmpty()) {
+                jobStatusCache.evictAll(batch); // Their cached FAILED status is stale now
+                outboxRelay.signal();
+            }
+        } while (!batch.isEmpty()); // A short batch is not the end, rows it waited for may have been requeued by someone else
+
+        if (requeued > 0) {
+            pruneDeadLetterList();
+        }
+        return requeued;
+    }
+
+    // Drop IDs that are no longer FAILED from deadletter:jobs without an O(N) LREM per ID
+    // The list is renamed away (workers keep pushing new failures to a fresh one),
+    // read back in chunks and the still FAILED IDs are pushed back with one multi-value RPUSH per chunk
+    private void pruneDeadLetterList() {
+        String drainKey = DLQ_KEY + ":pruning:" + UUID.randomUUID();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.renameIfAbsent(DLQ_KEY, drainKey))) {
+                return;
+            }
+        } catch (Exception e) {
+            return; // No list to prune
+        }
+
+        List<String> chunk;
+        do {
+            chunk = redisTemplate.opsForList().leftPop(drainKey, BATCH_SIZE);
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            Set<String> stillFailed = new HashSet<>(jobRepository.findFailedIds(chunk));
+            List<String> keep = new ArrayList<>(stillFailed.size());
+            for (String id : chunk) {
+                if (stillFailed.remove(id)) { // remove() also drops duplicate entries of the same ID
+                    keep.add(id);
+                }
+            }
+            if (!keep.isEmpty()) {
+                redisTemplate.opsForList().rightPushAll(DLQ_KEY, keep);
+            }
+        } while (chunk.size() == BATCH_SIZE);
+        redisTemplate.delete(drainKey);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.harry.jobservice.dlq.dto;
+
+import com.harry.jobservice.jobs.JobPriority;
+
+import java.time.Instant;
+
+// DTO for one dead-lettered job in GET /dlq and GET /dlq/export
+// Selected with a JPQL constructor query, so pages are never managed entities held by the persistence context
+// payload is null when payloadExternal is set, the payload is then only served by GET /jobs/{id}/payload
+
+public class DeadJobResponse {
+    public String id;
+    public String type;
+    public String payload;
+    public boolean payloadExternal;
+    public int attempts;
+    public String priority;
+    public Instant createdAt;
+
+    public DeadJobResponse(String id, String type, String payload, boolean payloadExternal, int attempts, JobPriority priority, Instant createdAt) {
+        this.id = id;
+        this.type = type;
+        this.payload = payload;
+        this.payloadExternal = payloadExternal;
+        this.attempts = attempts;
+        this.priority = priority == null ? JobPriority.NORMAL.name() : priority.name();
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,16 @@
+package com.harry.jobservice.dlq.dto;
+
+import java.util.List;
+
+// DTO for GET /dlq
+// nextCursor is passed back as ?after= for the next page, null on the last page
+
+public class DlqPageResponse {
+    public List<DeadJobResponse> jobs;
+    public String nextCursor;
+
+    public DlqPageResponse(List<DeadJobResponse> jobs, String nextCursor) {
+        this.jobs = jobs;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,14 @@
+package com.harry.jobservice.dlq.dto;
+
+import java.util.List;
+
+// DTO for POST /dlq/requeue, exactly one of the fields selects what is requeued
+//   ids  - these dead-lettered jobs
+//   type - every dead-lettered job of this type
+//   all  - every dead-lettered job
+
+public class DlqRequeueRequest {
+    public List<String> ids;
+    public String type;
+    public boolean all;
+}
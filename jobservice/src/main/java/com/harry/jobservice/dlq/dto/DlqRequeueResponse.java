@@ -0,0 +1,11 @@
+package com.harry.jobservice.dlq.dto;
+
+// DTO for POST /dlq/requeue, the number of jobs put back in the queue
+
+public class DlqRequeueResponse {
+    public long requeued;
+
+    public DlqRequeueResponse(long requeued) {
+        this.requeued = requeued;
+    }
+}
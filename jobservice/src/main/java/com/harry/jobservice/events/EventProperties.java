@@ -0,0 +1,35 @@
+package com.harry.jobservice.events;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Limits for the job event endpoints, bound from the "events.*" keys in application.yml
+
+@ConfigurationProperties(prefix = "events")
+public class EventProperties {
+
+    private Duration defaultAwait = Duration.ofSeconds(30); // GET /jobs/{id}/await without ?timeout=
+    private Duration maxAwait = Duration.ofSeconds(60); // Longer ?timeout= values are cut down to this
+    private Duration maxStream = Duration.ofMinutes(10); // GET /jobs/{id}/events is closed after this, clients reconnect
+
+    public Duration getDefaultAwait() {
+        return defaultAwait;
+    }
+    public void setDefaultAwait(Duration defaultAwait) {
+        this.defaultAwait = defaultAwait;
+    }
+    public Duration getMaxAwait() {
+        return maxAwait;
+    }
+    public void setMaxAwait(Duration maxAwait) {
+        this.maxAwait = maxAwait;
+    }
+    public Duration getMaxStream() {
+        return maxStream;
+    }
+    public void setMaxStream(Duration maxStream) {
+        this.maxStream = maxStream;
+    }
+
+}
@@ -0,0 +1,235 @@
+package com.harry.jobservice.events;
+
+import com.harry.jobservice.jobs.JobStatusCache;
+import com.harry.jobservice.jobs.dto.JobStatusResponse;
+import com.harry.jobservice.queue.QueueKeys;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Pushes job status changes to waiting HTTP clients
+// One Redis subscription per jobservice instance on jobs:events, which the workers publish to after every status change
+// Waiters are DeferredResults (GET /jobs/{id}/await) and SseEmitters (GET /jobs/{id}/events) keyed by job ID,
+// they hold no thread while waiting. The subscription thread only parses an event and looks up its waiters,
+// delivery (SSE writes are blocking servlet I/O) runs on virtual threads, so a slow client never holds up other waiters
+// or the Redis connection. Each waiter gets its events in order, from at most one delivery thread at a time
+// Every waiter subscribes before it reads the current status, so a change in between is never missed
+// Metrics: jobs.await.waiters (gauge)
+
+@Component
+public class JobEventHub implements MessageListener {
+    private final JobStatusCache jobStatusCache;
+    private final EventProperties properties;
+    private final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    private final ExecutorService delivery = Executors.newVirtualThreadPerTaskExecutor(); // Sends events to waiters off the subscription thread
+
+    private final Map<String, Set<Consumer<JobStatusResponse>>> waiters = new ConcurrentHashMap<>(); // Job ID -> listeners for its events
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public JobEventHub(RedisConnectionFactory connectionFactory, JobStatusCache jobStatusCache, EventProperties properties, MeterRegistry meterRegistry) {
+        this.jobStatusCache = jobStatusCache;
+        this.properties = properties;
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(new SyncTaskExecutor()); // Handling an event is a parse and a map lookup, the sends are handed to delivery
+        container.addMessageListener(this, new ChannelTopic(QueueKeys.EVENTS_CHANNEL));
+        meterRegistry.gauge("jobs.await.waiters", waiting);
+    }
+
+    @PostConstruct
+    public void start() {
+        container.afterPropertiesSet();
+        container.start();
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        container.destroy();
+        delivery.shutdown();
+    }
+
+    // Long-poll: completes with the job's status once it is COMPLETED or FAILED,
+    // or with its current status when the timeout passes first
+    public DeferredResult<ResponseEntity<JobStatusResponse>> await(String jobId, String timeout) {
+        Duration wait = clamp(timeout, properties.getDefaultAwait(), properties.getMaxAwait());
+        DeferredResult<ResponseEntity<JobStatusResponse>> result = new DeferredResult<>(wait.toMillis());
+        Runnable unsubscribe = subscribe(jobId, status -> {
+            if (isFinal(status)) {
+                result.setResult(ResponseEntity.ok(status));
+            }
+        });
+        result.onCompletion(unsubscribe); // Also runs after a timeout or error
+        result.onTimeout(() -> result.setResult(jobStatusCache.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build())));
+
+        JobStatusResponse current = currentOrNotFound(jobId, unsubscribe);
+        if (isFinal(current)) {
+            result.setResult(ResponseEntity.ok(current));
+        }
+        return result;
+    }
+
+    // Server-sent events: the current status first, then one "status" event per change,
+    // the stream ends after COMPLETED or FAILED or after events.max-stream
+    public SseEmitter stream(String jobId) {
+        SseEmitter emitter = new SseEmitter(properties.getMaxStream().toMillis());
+        Runnable unsubscribe = subscribe(jobId, status -> send(emitter, status));
+        emitter.onCompletion(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        send(emitter, currentOrNotFound(jobId, unsubscribe));
+        return emitter;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JobStatusResponse status;
+        try {
+            status = parse(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            System.out.println("Malformed job event: " + e.getMessage());
+            return;
+        }
+        Set<Consumer<JobStatusResponse>> listeners = waiters.get(status.id);
+        if (listeners != null) {
+            for (Consumer<JobStatusResponse> listener : listeners) {
+                listener.accept(status);
+            }
+        }
+    }
+
+    // Returns the action that removes the listener again
+    private Runnable subscribe(String jobId, Consumer<JobStatusResponse> waiter) {
+        Consumer<JobStatusResponse> listener = new Mailbox(waiter);
+        waiters.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(listener);
+        waiting.incrementAndGet();
+        return () -> waiters.computeIfPresent(jobId, (id, listeners) -> {
+            if (listeners.remove(listener)) {
+                waiting.decrementAndGet();
+            }
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    private JobStatusResponse currentOrNotFound(String jobId, Runnable unsubscribe) {
+        Optional<JobStatusResponse> current = jobStatusCache.find(jobId);
+        if (current.isEmpty()) {
+            unsubscribe.run();
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job " + jobId + " not found");
+        }
+        return current.get();
+    }
+
+    // Events come from a delivery thread and the request thread, one send at a time per emitter
+    private static void send(SseEmitter emitter, JobStatusResponse status) {
+        synchronized (emitter) {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(status));
+                if (isFinal(status)) {
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                emitter.completeWithError(e); // Client went away, or the stream already completed
+            }
+        }
+    }
+
+    private static boolean isFinal(JobStatusResponse status) {
+        return "COMPLETED".equals(status.status) || "FAILED".equals(status.status);
+    }
+
+    // ?timeout= as a duration ("30s", "500ms", plain numbers are milliseconds), capped at max
+    private static Duration clamp(String timeout, Duration defaultTimeout, Duration max) {
+        if (timeout == null || timeout.isBlank()) {
+            return defaultTimeout;
+        }
+        Duration requested;
+        try {
+            requested = DurationStyle.detectAndParse(timeout);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid timeout: " + timeout);
+        }
+        if (requested.isNegative() || requested.isZero()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "timeout must be positive");
+        }
+        return requested.compareTo(max) > 0 ? max : requested;
+    }
+
+    // Queues a waiter's events and drains them on a delivery thread, started only when none is draining already
+    private final class Mailbox implements Consumer<JobStatusResponse> {
+        private final Consumer<JobStatusResponse> waiter;
+        private final Queue<JobStatusResponse> events = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Mailbox(Consumer<JobStatusResponse> waiter) {
+            this.waiter = waiter;
+        }
+
+        @Override
+        public void accept(JobStatusResponse status) {
+            events.add(status);
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    delivery.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false); // Shutting down, the waiter times out instead
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                JobStatusResponse status;
+                while ((status = events.poll()) != null) {
+                    try {
+                        waiter.accept(status);
+                    } catch (RuntimeException e) {
+                        System.out.println("Job event delivery error: " + e.getMessage());
+                    }
+                }
+                draining.set(false);
+            } while (!events.isEmpty() && draining.compareAndSet(false, true)); // An event added after the poll and before the reset
+        }
+    }
+
+    // id|status|attempts|priority|createdAt|availableAt|type, see QueueKeys.EVENTS_CHANNEL
+    private static JobStatusResponse parse(String event) {
+        String[] fields = event.split("\\|", 7);
+        return new JobStatusResponse(fields[0], fields[6], fields[1], Integer.parseInt(fields[2]), fields[3],
+                instant(fields[4]), instant(fields[5]));
+    }
+
+    private static Instant instant(String value) {
+        return "null".equals(value) ? null : Instant.parse(value);
+    }
+
+}
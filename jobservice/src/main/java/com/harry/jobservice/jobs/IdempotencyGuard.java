@@ -0,0 +1,91 @@
+package com.harry.jobservice.jobs;
+
+import com.harry.jobservice.jobs.dto.CreateJobResponse;
+import com.harry.jobservice.queue.QueueKeys;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Finds the submissions that repeat an earlier idempotency key
+//   idempotency:<key> (STRING) ID of the job first created with the key, expires after idempotency.ttl
+// A batch's keys are SET NX in Redis with one script call, a key that was free is new and needs no Postgres lookup,
+// only keys Redis has seen before are looked up in Postgres (the row decides, the Redis entry may belong to a failed insert)
+// The unique index jobs_idempotency_key_idx is the backstop for concurrent duplicates and for keys that expired in Redis
+
+@Component
+public class IdempotencyGuard {
+    // KEYS idempotency:<key> per keyed job, ARGV[1] ttl millis, ARGV[i + 1] job ID for KEYS[i]
+    // Returns the 1-based positions of the keys that were already set
+    private static final RedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local seen = {}
+            for i, key in ipairs(KEYS) do
+                if not redis.call('SET', key, ARGV[i + 1], 'NX', 'PX', ARGV[1]) then
+                    seen[#seen + 1] = i
+                end
+            end
+            return seen
+            """, List.class);
+
+    private final JobRepository jobRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final IdempotencyProperties properties;
+
+    public IdempotencyGuard(JobRepository jobRepository, StringRedisTemplate redisTemplate, IdempotencyProperties properties) {
+        this.jobRepository = jobRepository;
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+    }
+
+    // Reserve the keys of these jobs, returns the keys that may already belong to an existing job
+    // If Redis is unavailable every key is treated as possibly seen, so correctness only costs a Postgres lookup
+    public Set<String> reserve(List<JobEntity> keyedJobs) {
+        if (keyedJobs.isEmpty()) {
+            return Set.of();
+        }
+        List<String> keys = new ArrayList<>(keyedJobs.size());
+        List<Object> args = new ArrayList<>(keyedJobs.size() + 1);
+        args.add(String.valueOf(properties.getTtl().toMillis()));
+        for (JobEntity job : keyedJobs) {
+            keys.add(QueueKeys.idempotency(job.getIdempotencyKey()));
+            args.add(job.getId());
+        }
+
+        Set<String> seen = new HashSet<>();
+        try {
+            List<?> positions = redisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+            if (positions != null) {
+                for (Object position : positions) {
+                    seen.add(keyedJobs.get(((Number) position).intValue() - 1).getIdempotencyKey());
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Idempotency pre-check failed, checking Postgres instead: " + e.getMessage());
+            for (JobEntity job : keyedJobs) {
+                seen.add(job.getIdempotencyKey());
+            }
+        }
+        return seen;
+    }
+
+    // Response of the job each key was first used for, keys without a job are left out
+    public Map<String, CreateJobResponse> findExisting(Collection<String> keys) {
+        Map<String, CreateJobResponse> existing = new HashMap<>();
+        if (keys.isEmpty()) {
+            return existing;
+        }
+        for (Object[] row : jobRepository.findByIdempotencyKeys(keys)) {
+            existing.put((String) row[0], new CreateJobResponse((String) row[1], ((JobStatus) row[2]).name()));
+        }
+        return existing;
+    }
+
+}
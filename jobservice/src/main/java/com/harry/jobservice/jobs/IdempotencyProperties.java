@@ -0,0 +1,28 @@
+package com.harry.jobservice.jobs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Settings for idempotent job submission, bound from the "idempotency.*" keys in application.yml
+
+@ConfigurationProperties(prefix = "idempotency")
+public class IdempotencyProperties {
+
+    private Duration ttl = Duration.ofHours(24); // How long a key is remembered in Redis, later retries are still caught by the unique index
+    private int maxKeyLength = 255; // Longer keys are rejected with 400
+
+    public Duration getTtl() {
+        return ttl;
+    }
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
+    public void setMaxKeyLength(int maxKeyLength) {
+        this.maxKeyLength = maxKeyLength;
+    }
+
+}
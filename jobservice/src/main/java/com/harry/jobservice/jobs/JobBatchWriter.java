@@ -0,0 +1,185 @@
+package com.harry.jobservice.jobs;
+
+import com.harry.jobservice.payload.JobPayloadStore;
+import com.harry.jobservice.queue.QueueProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Writes new and requeued jobs with plain JDBC instead of JPA saves
+// Job IDs are assigned by the application, so Hibernate cannot batch these inserts itself
+// With reWriteBatchedInserts=true on the JDBC URL the driver turns each batch into multi-row INSERTs
+// Large payloads are written to job_payloads by JobPayloadStore in the same transaction and left out of the jobs row
+// Every write also queues the jobs in the same transaction:
+//   redis backend    - job_outbox rows, the OutboxRelay pushes them to Redis after commit
+//                      (scheduled jobs wait in the outbox until they come within outbox.schedule-horizon)
+//   postgres backend - NOTIFY jobs_pending, delivered on commit to wake idle workers
+
+@Repository
+public class JobBatchWriter {
+    private static final int JDBC_BATCH_SIZE = 1000; // Rows sent to Postgres per JDBC batch
+
+    private static final String INSERT_JOB_SQL = """
+        INSERT INTO jobs (id, type, payload, status, attempts, priority, created_at, available_at, idempotency_key, pending_parents, payload_external)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final String INSERT_DEPENDENCY_SQL = """
+        INSERT INTO job_dependencies (parent_id, child_id)
+        VALUES (?, ?)
+        """;
+
+    private static final String INSERT_OUTBOX_SQL = """
+        INSERT INTO job_outbox (job_id, priority, created_at, available_at)
+        VALUES (?, ?, ?, ?)
+        """;
+
+    private static final String NOTIFY_SQL = "NOTIFY jobs_pending";
+
+    // Only FAILED jobs: a running job would run twice, a WAITING one would skip its parents
+    private static final String REQUEUE_SQL = """
+        UPDATE jobs SET status = 'PENDING', available_at = now(), lease_owner = NULL, lease_expires_at = NULL
+        WHERE id = ? AND status = 'FAILED'
+        RETURNING coalesce(priority, 'NORMAL')
+        """;
+
+    private static final String REQUEUE_RESET_ATTEMPTS_SQL = """
+        UPDATE jobs SET status = 'PENDING', attempts = 0, available_at = now(), lease_owner = NULL, lease_expires_at = NULL
+        WHERE id = ? AND status = 'FAILED'
+        RETURNING coalesce(priority, 'NORMAL')
+        """;
+
+    // One batch of a bulk DLQ requeue, keyset-paged by id so every FAILED row is visited once
+    // Plain FOR UPDATE, not SKIP LOCKED: a row locked by a single requeue or the archiver is waited for, skipping it
+    // would move the cursor past it and leave it in the DLQ. Such a row may no longer be FAILED once the lock is released,
+    // so a batch can come back short while more rows follow
+    private static final String REQUEUE_FAILED_SQL = """
+        UPDATE jobs SET status = 'PENDING', attempts = 0, available_at = now(), lease_owner = NULL, lease_expires_at = NULL
+        WHERE id IN (
+            SELECT id FROM jobs
+            WHERE status = 'FAILED' AND id > ? AND (?::varchar IS NULL OR type = ?) AND (?::varchar[] IS NULL OR id = ANY(?::varchar[]))
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE
+        )
+        RETURNING id, coalesce(priority, 'NORMAL')
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final QueueProperties queueProperties;
+    private final JobPayloadStore payloadStore;
+
+    public JobBatchWriter(JdbcTemplate jdbcTemplate, QueueProperties queueProperties, JobPayloadStore payloadStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queueProperties = queueProperties;
+        this.payloadStore = payloadStore;
+    }
+
+    // Insert all jobs and queue them in one transaction, either every job is stored or none is
+    // An idempotency key that is already taken fails the whole batch with a DataIntegrityViolationException
+    @Transactional
+    public void insertAll(List<JobEntity> jobs) {
+        payloadStore.storeLarge(jobs);
+        jdbcTemplate.batchUpdate(INSERT_JOB_SQL, jobs, JDBC_BATCH_SIZE, JobBatchWriter::setJob);
+        enqueue(jobs.stream().map(job -> new QueuedJob(job.getId(), job.getPriority(), job.getAvailableAt())).toList());
+    }
+
+    // Insert a job graph in one transaction: every job, one job_dependencies row per edge, and queue entries for the roots
+    // The WAITING jobs are queued by the worker that completes their last parent
+    @Transactional
+    public void insertGraph(List<JobEntity> jobs, Map<String, Set<String>> parentIdsByChildId) {
+        payloadStore.storeLarge(jobs);
+        jdbcTemplate.batchUpdate(INSERT_JOB_SQL, jobs, JDBC_BATCH_SIZE, JobBatchWriter::setJob);
+
+        List<String[]> edges = new ArrayList<>();
+        parentIdsByChildId.forEach((childId, parentIds) -> parentIds.forEach(parentId -> edges.add(new String[] { parentId, childId })));
+        jdbcTemplate.batchUpdate(INSERT_DEPENDENCY_SQL, edges, JDBC_BATCH_SIZE, (ps, edge) -> {
+            ps.setString(1, edge[0]);
+            ps.setString(2, edge[1]);
+        });
+
+        enqueue(jobs.stream()
+                .filter(job -> job.getStatus() == JobStatus.PENDING)
+                .map(job -> new QueuedJob(job.getId(), job.getPriority(), job.getAvailableAt()))
+                .toList());
+    }
+
+    // Flip a FAILED job back to PENDING, claimable right away, and queue it again
+    // Returns false if the job does not exist or is not FAILED
+    @Transactional
+    public boolean requeue(String jobId, boolean resetAttempts) {
+        List<String> priorities = jdbcTemplate.queryForList(resetAttempts ? REQUEUE_RESET_ATTEMPTS_SQL : REQUEUE_SQL, String.class, jobId);
+        if (priorities.isEmpty()) {
+            return false;
+        }
+        enqueue(List.of(new QueuedJob(jobId, JobPriority.valueOf(priorities.get(0)), Instant.now())));
+        return true;
+    }
+
+    // Requeue up to limit FAILED jobs with an id after afterId, optionally only of one type or only from a list of IDs
+    // Attempts are reset and the whole batch is flipped with one UPDATE and queued with one outbox batch, in one transaction
+    // Returns the requeued IDs, only an empty list means there are no more (rows requeued concurrently shorten a batch)
+    @Transactional
+    public List<String> requeueFailed(String afterId, String type, List<String> jobIds, int limit) {
+        List<QueuedJob> requeued = jdbcTemplate.query(REQUEUE_FAILED_SQL, ps -> {
+            ps.setString(1, afterId);
+            ps.setString(2, type);
+            ps.setString(3, type);
+            Array ids = jobIds == null ? null : ps.getConnection().createArrayOf("varchar", jobIds.toArray());
+            ps.setArray(4, ids);
+            ps.setArray(5, ids);
+            ps.setInt(6, limit);
+        }, (rs, row) -> new QueuedJob(rs.getString(1), JobPriority.valueOf(rs.getString(2)), Instant.now()));
+        if (!requeued.isEmpty()) {
+            enqueue(requeued);
+        }
+        return requeued.stream().map(QueuedJob::jobId).toList();
+    }
+
+    private static void setJob(PreparedStatement ps, JobEntity job) throws SQLException {
+        ps.setString(1, job.getId());
+        ps.setString(2, job.getType());
+        ps.setString(3, job.isPayloadExternal() ? null : job.getPayload());
+        ps.setString(4, job.getStatus().name());
+        ps.setInt(5, job.getAttempts());
+        ps.setString(6, job.getPriority().name());
+        ps.setTimestamp(7, Timestamp.from(job.getCreatedAt()));
+        ps.setTimestamp(8, Timestamp.from(job.getAvailableAt()));
+        ps.setString(9, job.getIdempotencyKey());
+        ps.setInt(10, job.getPendingParents());
+        ps.setBoolean(11, job.isPayloadExternal());
+    }
+
+    // Runs inside the caller's transaction
+    private void enqueue(List<QueuedJob> queuedJobs) {
+        if (queueProperties.isPostgres()) {
+            jdbcTemplate.execute(NOTIFY_SQL); // The rows themselves are the queue, one NOTIFY per transaction is enough
+        } else {
+            insertOutbox(queuedJobs);
+        }
+    }
+
+    private void insertOutbox(List<QueuedJob> queuedJobs) {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_SQL, queuedJobs, JDBC_BATCH_SIZE, (ps, queuedJob) -> {
+            ps.setString(1, queuedJob.jobId());
+            ps.setString(2, queuedJob.priority().name());
+            ps.setTimestamp(3, now);
+            ps.setTimestamp(4, Timestamp.from(queuedJob.availableAt()));
+        });
+    }
+
+    // A job ID, the lane it is queued on and when it may run
+    private record QueuedJob(String jobId, JobPriority priority, Instant availableAt) {}
+
+}
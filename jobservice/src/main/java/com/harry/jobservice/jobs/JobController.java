@@ -1,19 +1,31 @@
 package com.harry.jobservice.jobs;
 
+import com.harry.jobservice.events.JobEventHub;
+import com.harry.jobservice.jobs.dto.CreateJobGraphRequest;
+import com.harry.jobservice.jobs.dto.CreateJobGraphResponse;
 import com.harry.jobservice.jobs.dto.CreateJobResponse;
 import com.harry.jobservice.jobs.dto.CreateJobRequest;
+import com.harry.jobservice.jobs.dto.JobAttemptResponse;
+import com.harry.jobservice.jobs.dto.JobStatusResponse;
+import com.harry.jobservice.payload.JobPayloadStore;
+import com.harry.jobservice.results.JobResultStore;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 // REST controller for managing jobs
 // Handles job creation and retrieval
-// Uses JobRepository for database interactions
+// Uses JobStatusCache for reads and JobSubmissionService for creating and requeueing jobs
 // Defines endpoints under /jobs
 // Uses CreateJobRequest and CreateJobResponse DTOs for request/response payloads
-// Simple controller with two endpoints: POST /jobs and GET /jobs/{id}
+// Simple controller with endpoints: POST /jobs, POST /jobs/batch, POST /jobs/graph, GET /jobs/{id}, GET /jobs/{id}/payload, GET /jobs/{id}/result,
+// GET /jobs/{id}/attempts, GET /jobs/{id}/await and GET /jobs/{id}/events
 // No complex business logic, just basic CRUD operations
 // Annotated with @RestController and @RequestMapping
 
@@ -21,64 +33,113 @@ import java.util.UUID;
 @RestController
 @RequestMapping("/jobs")
 public class JobController {
-    private final JobRepository jobRepository;
-    private final StringRedisTemplate redisTemplate;
-
-    public JobController(JobRepository jobRepository, StringRedisTemplate redisTemplate) {
-        this.jobRepository = jobRepository;
-        this.redisTemplate = redisTemplate;
+    private static final int MAX_BATCH_SIZE = 10_000; // Upper bound on jobs accepted by one POST /jobs/batch
+
+    private final JobStatusCache jobStatusCache;
+    private final JobSubmissionService jobSubmissionService;
+    private final JobEventHub jobEventHub;
+    private final JobPayloadStore jobPayloadStore;
+    private final JobResultStore jobResultStore;
+
+    public JobController(JobStatusCache jobStatusCache, JobSubmissionService jobSubmissionService, JobEventHub jobEventHub,
+                         JobPayloadStore jobPayloadStore, JobResultStore jobResultStore) {
+        this.jobStatusCache = jobStatusCache;
+        this.jobSubmissionService = jobSubmissionService;
+        this.jobEventHub = jobEventHub;
+        this.jobPayloadStore = jobPayloadStore;
+        this.jobResultStore = jobResultStore;
     }
 
     @PostMapping
     public ResponseEntity<CreateJobResponse> createJob(@RequestBody CreateJobRequest request) {
-        // Generate a unique job ID
-        String jobId = UUID.randomUUID().toString();
-
-        String jobType = (request.type == null || request.type.isEmpty()) ? "DEFAULT" : request.type;
-        String jobPayload = (request.payload == null) ? "" : request.payload;
-
-
+        // Save the job and its outbox row in one transaction
+        // The outbox relay enqueues the job ID in Redis after the commit
+        // A repeated idempotencyKey returns the job created the first time
+        CreateJobResponse response = jobSubmissionService.submit(List.of(request)).get(0);
 
-        // Create a new JobEntity
-        JobEntity job = new JobEntity(jobId, jobType, jobPayload);
+        return ResponseEntity.ok(response);
+    }
 
-        // Save the job to the database
-        jobRepository.save(job);
+    // POST /jobs/batch - Create many jobs with one batched insert, the outbox relay enqueues them with one multi-value RPUSH
+    @PostMapping("/batch")
+    public ResponseEntity<List<CreateJobResponse>> createJobs(@RequestBody List<CreateJobRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        // Enqueue job ID in Redis list
-        redisTemplate.opsForList().rightPush("queue:jobs", job.getId());
+        return ResponseEntity.ok(jobSubmissionService.submit(requests));
+    }
 
-        // Create response
-        CreateJobResponse response = new CreateJobResponse(job.getId(), job.getStatus().name());
+    // POST /jobs/graph - Create a job graph, each job starts as soon as every job it depends on COMPLETED
+    @PostMapping("/graph")
+    public ResponseEntity<CreateJobGraphResponse> createJobGraph(@RequestBody CreateJobGraphRequest request) {
+        if (request != null && request.nodes != null && request.nodes.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(jobSubmissionService.submitGraph(request));
     }
 
+    // GET /jobs/{id} - Status projection (no payload), served from Redis and only read from Postgres on a cache miss
     @GetMapping("/{id}")
-    public ResponseEntity<JobEntity> getJob(@PathVariable String id) {
-        return jobRepository.findById(id)
+    public ResponseEntity<JobStatusResponse> getJob(@PathVariable String id) {
+        return jobStatusCache.find(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
-    @PostMapping("{id}/requeue")
-    public ResponseEntity<Void> requeueJob(@PathVariable String id) {
-        // Check if job exists
-        if (!jobRepository.existsById(id)) {
+    // GET /jobs/{id}/payload - The job's payload as sent, large payloads are streamed out of job_payloads while being decompressed
+    @GetMapping("/{id}/payload")
+    public ResponseEntity<StreamingResponseBody> getJobPayload(@PathVariable String id) {
+        return jobPayloadStore.find(id)
+                .map(payload -> ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body((StreamingResponseBody) payload::writeTo))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // GET /jobs/{id}/result - What the handler returned, 404 until the job COMPLETED, for handlers that return nothing and after worker.result-ttl
+    @GetMapping("/{id}/result")
+    public ResponseEntity<byte[]> getJobResult(@PathVariable String id) {
+        return jobResultStore.findResult(id)
+                .map(result -> ResponseEntity.ok().contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8)).body(result))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // GET /jobs/{id}/attempts - Every attempt so far with its worker, outcome, duration and error, written by the workers a moment after each attempt
+    @GetMapping("/{id}/attempts")
+    public ResponseEntity<List<JobAttemptResponse>> getJobAttempts(@PathVariable String id) {
+        List<JobAttemptResponse> attempts = jobResultStore.findAttempts(id);
+        if (attempts.isEmpty() && jobStatusCache.find(id).isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok(attempts);
+    }
 
-        JobEntity job = jobRepository.findById(id).get();
-        // Update job status to PENDING
-        job.setStatus(JobStatus.PENDING);
-        jobRepository.save(job);
+    // GET /jobs/{id}/await?timeout=30s - Long-poll until the job is COMPLETED or FAILED, returns its status either way
+    // On timeout the current (unfinished) status is returned and the client simply asks again
+    @GetMapping("/{id}/await")
+    public DeferredResult<ResponseEntity<JobStatusResponse>> awaitJob(@PathVariable String id, @RequestParam(required = false) String timeout) {
+        return jobEventHub.await(id, timeout);
+    }
 
-        // Add job ID to Redis queue
-        redisTemplate.opsForList().rightPush("queue:jobs", id);
+    // GET /jobs/{id}/events - Server-sent "status" events, the current status first and then every change
+    @GetMapping(path = "/{id}/events", produces = "text/event-stream")
+    public SseEmitter jobEvents(@PathVariable String id) {
+        return jobEventHub.stream(id);
+    }
+
+    @PostMapping("{id}/requeue")
+    public ResponseEntity<Void> requeueJob(@PathVariable String id) {
+        // Update job status to PENDING and add job ID to the outbox in one transaction
+        // Only FAILED jobs can be requeued, anything else is answered with 404 like an unknown ID
+        if (!jobSubmissionService.requeue(id, false)) {
+            return ResponseEntity.notFound().build();
+        }
 
         // Return 200 OK response
         return ResponseEntity.ok().build();
     }
 
-    
 }
\ No newline at end of file
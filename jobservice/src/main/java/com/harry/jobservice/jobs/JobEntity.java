@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 // Represents a job entity in the database
-// Contains fields for job ID, type, payload, status, attempts, and creation timestamp
+// Contains fields for job ID, type, payload, status, attempts, priority, creation timestamp, the time it becomes claimable
+// and the client's optional idempotency key
+// Payloads over payload.inline-limit are kept in job_payloads instead (see JobPayloadStore), payload is then NULL in the table
 // Uses JPA annotations for ORM mapping
 
 @Entity
@@ -18,8 +20,11 @@ public class JobEntity {
     @Column(nullable = false)
     private String type;
 
-    @Column(columnDefinition = "text")
-    private String payload;
+    @Column(columnDefinition = "text", updatable = false)
+    private String payload; // Never rewritten by an entity update, only JobBatchWriter inserts it
+
+    @Column(nullable = false, updatable = false)
+    private boolean payloadExternal; // The payload is in job_payloads, set by JobPayloadStore before the insert
 
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
@@ -28,14 +33,35 @@ public class JobEntity {
     @Column(nullable = false)
     private int attempts;
 
+    @Enumerated(EnumType.STRING)
+    @Column
+    private JobPriority priority; // Which queue lane the job travels through, null on rows older than priorities means NORMAL
+
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
-    public JobEntity(String id, String type, String payload) {
+    @Column
+    private Instant availableAt; // Earliest time the job may be claimed, set on creation (runAt for scheduled jobs) and pushed out on retry
+
+    @Column(updatable = false)
+    private String idempotencyKey; // Client supplied, unique among jobs that have one (jobs_idempotency_key_idx), null otherwise
+
+    @Column(nullable = false)
+    private int pendingParents; // Parents in its job graph that have not COMPLETED yet, the job is WAITING while this is above 0
+
+    @Column
+    private String leaseOwner; // worker.id of the worker running the job, only written by the worker
+
+    @Column
+    private Instant leaseExpiresAt; // When the worker's lease on the job runs out unless renewed, only written by the worker
+
+    public JobEntity(String id, String type, String payload, JobPriority priority) {
         this.id = id;
         this.type = type;
         this.payload = payload;
+        this.priority = priority;
         this.createdAt = Instant.now();
+        this.availableAt = this.createdAt;
         this.attempts = 0;
         this.status = JobStatus.PENDING;
     }
@@ -60,9 +86,24 @@ public class JobEntity {
     public int getAttempts() {
         return attempts;
     }
+    public JobPriority getPriority() {
+        return priority == null ? JobPriority.NORMAL : priority;
+    }
     public Instant getCreatedAt() {
         return createdAt;
     }
+    public Instant getAvailableAt() {
+        return availableAt;
+    }
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+    public int getPendingParents() {
+        return pendingParents;
+    }
+    public boolean isPayloadExternal() {
+        return payloadExternal;
+    }
 
     public void setStatus(JobStatus status) {
         this.status = status;
@@ -73,5 +114,17 @@ public class JobEntity {
     public void setAttempts(int attempts) {
         this.attempts = attempts;
     }
+    public void setAvailableAt(Instant availableAt) {
+        this.availableAt = availableAt;
+    }
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+    public void setPendingParents(int pendingParents) {
+        this.pendingParents = pendingParents;
+    }
+    public void setPayloadExternal(boolean payloadExternal) {
+        this.payloadExternal = payloadExternal;
+    }
 
 }
@@ -1,10 +1,58 @@
 package com.harry.jobservice.jobs;
 
-import org.springframework.data.jpa.repository.JpaRepository;;
+import com.harry.jobservice.dlq.dto.DeadJobResponse;
+import com.harry.jobservice.jobs.dto.JobStatusResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 //Gives access to database CRUD operations for JobEntity
 //e.g., save(), findById(), findAll(), delete(), etc.
 
 public interface JobRepository extends JpaRepository<JobEntity, String> {
     // Additional repository methods can be added here if needed
+
+    // Status projection for GET /jobs/{id} on a cache miss, selects the small columns only (no payload)
+    @Query("""
+        SELECT new com.harry.jobservice.jobs.dto.JobStatusResponse(j.id, j.type, j.status, j.attempts, j.priority, j.createdAt, j.availableAt)
+        FROM JobEntity j
+        WHERE j.id = :id
+        """)
+    Optional<JobStatusResponse> findStatusById(String id);
+
+    // [idempotencyKey, id, status] of the jobs already created with one of these keys
+    @Query("""
+        SELECT j.idempotencyKey, j.id, j.status FROM JobEntity j
+        WHERE j.idempotencyKey IN :keys
+        """)
+    List<Object[]> findByIdempotencyKeys(Collection<String> keys);
+
+    // One page of dead-lettered (FAILED) jobs after the cursor, keyset-paged on the partial index jobs_failed_idx
+    @Query("""
+        SELECT new com.harry.jobservice.dlq.dto.DeadJobResponse(j.id, j.type, j.payload, j.payloadExternal, j.attempts, j.priority, j.createdAt)
+        FROM JobEntity j
+        WHERE j.status = com.harry.jobservice.jobs.JobStatus.FAILED AND j.id > :after
+        ORDER BY j.id
+        """)
+    List<DeadJobResponse> findFailedAfter(String after, Pageable page);
+
+    // Same, only jobs of one type
+    @Query("""
+        SELECT new com.harry.jobservice.dlq.dto.DeadJobResponse(j.id, j.type, j.payload, j.payloadExternal, j.attempts, j.priority, j.createdAt)
+        FROM JobEntity j
+        WHERE j.status = com.harry.jobservice.jobs.JobStatus.FAILED AND j.type = :type AND j.id > :after
+        ORDER BY j.id
+        """)
+    List<DeadJobResponse> findFailedOfTypeAfter(String type, String after, Pageable page);
+
+    // Which of these IDs are still FAILED, used to prune the deadletter:jobs list after a bulk requeue
+    @Query("""
+        SELECT j.id FROM JobEntity j
+        WHERE j.id IN :ids AND j.status = com.harry.jobservice.jobs.JobStatus.FAILED
+        """)
+    List<String> findFailedIds(Collection<String> ids);
 }
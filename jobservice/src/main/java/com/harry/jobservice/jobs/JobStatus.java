@@ -3,6 +3,7 @@ package com.harry.jobservice.jobs;
 // Enum representing the status of a job
 
 public enum JobStatus {
+    WAITING, // Part of a job graph, waits until every parent COMPLETED (jobs.pending_parents reaches 0) and then becomes PENDING
     PENDING,
     IN_PROGRESS,
     COMPLETED,
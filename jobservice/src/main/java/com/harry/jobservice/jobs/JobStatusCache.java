@@ -0,0 +1,143 @@
+package com.harry.jobservice.jobs;
+
+import com.harry.jobservice.archive.JobArchiver;
+import com.harry.jobservice.jobs.dto.JobStatusResponse;
+import com.harry.jobservice.queue.QueueKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Read-through cache of job status projections for GET /jobs/{id}
+//   job:status:<id> (HASH) id, type, status, attempts, priority, createdAt, availableAt - expires after status-cache.ttl
+// Workers write the hash on every status transition (write-through), so a poll is one HGETALL
+// On a miss the projection is loaded from Postgres and stored only if the key is still absent,
+// a worker's newer write is never overwritten with what was just read
+// Jobs the JobArchiver already moved out of jobs are looked up in jobs_archive
+// Metrics: jobs.status.cache{result=hit|miss}
+
+@Component
+public class JobStatusCache {
+    // KEYS[1] job:status:<id>, ARGV[1] ttl millis, ARGV[2..] field/value pairs
+    private static final RedisScript<Long> PUT_IF_ABSENT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final JobRepository jobRepository;
+    private final JobArchiver archiver;
+    private final StringRedisTemplate redisTemplate;
+    private final StatusCacheProperties properties;
+    private final Counter hits;
+    private final Counter misses;
+
+    public JobStatusCache(JobRepository jobRepository, JobArchiver archiver, StringRedisTemplate redisTemplate,
+                          StatusCacheProperties properties, MeterRegistry meterRegistry) {
+        this.jobRepository = jobRepository;
+        this.archiver = archiver;
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.hits = meterRegistry.counter("jobs.status.cache", "result", "hit");
+        this.misses = meterRegistry.counter("jobs.status.cache", "result", "miss");
+    }
+
+    public Optional<JobStatusResponse> find(String jobId) {
+        if (!properties.isEnabled()) {
+            return load(jobId);
+        }
+
+        String key = QueueKeys.jobStatus(jobId);
+        try {
+            Map<Object, Object> cached = redisTemplate.opsForHash().entries(key);
+            if (!cached.isEmpty()) {
+                hits.increment();
+                return Optional.of(fromHash(cached));
+            }
+        } catch (Exception e) {
+            System.out.println("Job status cache read error: " + e.getMessage()); // Fall back to Postgres
+            return load(jobId);
+        }
+
+        misses.increment();
+        Optional<JobStatusResponse> status = load(jobId);
+        status.ifPresent(this::putIfAbsent); // Unknown IDs are not cached, a job created right after must not read as missing
+        return status;
+    }
+
+    // From Postgres, the archive is only read for IDs jobs does not have
+    private Optional<JobStatusResponse> load(String jobId) {
+        return jobRepository.findStatusById(jobId).or(() -> archiver.findStatus(jobId));
+    }
+
+    // Drop the cached status after jobservice itself changed the job (requeue), the next poll reads it from Postgres
+    public void evict(String jobId) {
+        try {
+            redisTemplate.delete(QueueKeys.jobStatus(jobId));
+        } catch (Exception e) {
+            System.out.println("Job status cache evict error: " + e.getMessage()); // Expires after status-cache.ttl
+        }
+    }
+
+    // Same for a batch of jobs, one pipelined round trip
+    public void evictAll(List<String> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String jobId : jobIds) {
+                    redis.del(QueueKeys.jobStatus(jobId)); // One key per DEL, a multi-key DEL fails with CROSSSLOT on a cluster
+                }
+                return null; // Pipelined callbacks must return null
+            });
+        } catch (Exception e) {
+            System.out.println("Job status cache evict error: " + e.getMessage());
+        }
+    }
+
+    private void putIfAbsent(JobStatusResponse status) {
+        try {
+            redisTemplate.execute(PUT_IF_ABSENT_SCRIPT, List.of(QueueKeys.jobStatus(status.id)),
+                    String.valueOf(properties.getTtl().toMillis()),
+                    "id", status.id,
+                    "type", status.type,
+                    "status", status.status,
+                    "attempts", String.valueOf(status.attempts),
+                    "priority", status.priority,
+                    "createdAt", String.valueOf(status.createdAt),
+                    "availableAt", String.valueOf(status.availableAt));
+        } catch (Exception e) {
+            System.out.println("Job status cache write error: " + e.getMessage());
+        }
+    }
+
+    private static JobStatusResponse fromHash(Map<Object, Object> hash) {
+        return new JobStatusResponse(
+                (String) hash.get("id"),
+                (String) hash.get("type"),
+                (String) hash.get("status"),
+                Integer.parseInt((String) hash.getOrDefault("attempts", "0")),
+                (String) hash.getOrDefault("priority", JobPriority.NORMAL.name()),
+                instant(hash.get("createdAt")),
+                instant(hash.get("availableAt")));
+    }
+
+    private static Instant instant(Object value) {
+        return value == null || "null".equals(value) ? null : Instant.parse((String) value);
+    }
+
+}
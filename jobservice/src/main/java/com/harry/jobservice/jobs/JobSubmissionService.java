@@ -0,0 +1,297 @@
+package com.harry.jobservice.jobs;
+
+import com.harry.jobservice.jobs.dto.CreateJobGraphRequest;
+import com.harry.jobservice.jobs.dto.CreateJobGraphResponse;
+import com.harry.jobservice.jobs.dto.CreateJobRequest;
+import com.harry.jobservice.jobs.dto.CreateJobResponse;
+import com.harry.jobservice.jobs.dto.JobGraphNode;
+import com.harry.jobservice.outbox.OutboxRelay;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Creates and requeues jobs
+// The request only waits for one Postgres commit (job rows + outbox rows),
+// the Redis push happens afterwards on the OutboxRelay thread
+// Requests with an idempotencyKey that was used before get the first job back instead of a new one, see IdempotencyGuard
+// Job graphs are inserted in one transaction too, only their roots are queued, the rest wait for their parents (see JobStatus.WAITING)
+// Metrics: jobs.submitted (counter, priority, scheduled), jobs.submit.duplicates (counter) and jobs.submit.db (timer) for the insert transaction
+
+@Service
+public class JobSubmissionService {
+    private final JobBatchWriter jobBatchWriter;
+    private final OutboxRelay outboxRelay;
+    private final JobStatusCache jobStatusCache;
+    private final IdempotencyGuard idempotencyGuard;
+    private final IdempotencyProperties idempotencyProperties;
+    private final MeterRegistry meterRegistry;
+    private final Timer insertTimer;
+
+    public JobSubmissionService(JobBatchWriter jobBatchWriter, OutboxRelay outboxRelay, JobStatusCache jobStatusCache,
+                                IdempotencyGuard idempotencyGuard, IdempotencyProperties idempotencyProperties, MeterRegistry meterRegistry) {
+        this.jobBatchWriter = jobBatchWriter;
+        this.outboxRelay = outboxRelay;
+        this.jobStatusCache = jobStatusCache;
+        this.idempotencyGuard = idempotencyGuard;
+        this.idempotencyProperties = idempotencyProperties;
+        this.meterRegistry = meterRegistry;
+        this.insertTimer = Timer.builder("jobs.submit.db")
+                .description("Insert transaction for one submitted batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Store new PENDING jobs, their responses are returned in request order
+    // Scheduled jobs are PENDING too, their availableAt keeps them from being claimed early
+    // A request whose idempotencyKey already has a job (earlier, or earlier in the same batch) is not inserted, its response is that job's
+    public List<CreateJobResponse> submit(List<CreateJobRequest> requests) {
+        List<JobEntity> jobs = new ArrayList<>(requests.size());
+        List<JobEntity> keyedJobs = new ArrayList<>();
+        for (CreateJobRequest request : requests) {
+            JobEntity job = newJob(request);
+            jobs.add(job);
+            if (job.getIdempotencyKey() != null) {
+                keyedJobs.add(job);
+            }
+        }
+
+        // Keys Redis has not seen are new, only the others cost a Postgres lookup
+        Set<String> seenKeys = idempotencyGuard.reserve(keyedJobs);
+        Map<String, CreateJobResponse> existing = idempotencyGuard.findExisting(seenKeys);
+        List<JobEntity> newJobs = newJobs(jobs, existing);
+        try {
+            insert(newJobs);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request committed one of the keys first (or its Redis entry had expired), nothing was inserted
+            existing.putAll(idempotencyGuard.findExisting(keyedJobs.stream().map(JobEntity::getIdempotencyKey).toList()));
+            newJobs = newJobs(jobs, existing);
+            insert(newJobs);
+        }
+        if (!newJobs.isEmpty()) {
+            outboxRelay.signal(); // Committed, let the relay push them right away
+        }
+
+        countSubmitted(newJobs);
+        if (newJobs.size() < jobs.size()) {
+            meterRegistry.counter("jobs.submit.duplicates").increment(jobs.size() - newJobs.size());
+        }
+
+        return responses(jobs, existing);
+    }
+
+    // Store a job graph: one job per node, roots PENDING and queued, every other node WAITING until all its parents COMPLETED
+    // Keys must be unique and every dependsOn must name another node of the request, cycles are rejected, all with 400
+    public CreateJobGraphResponse submitGraph(CreateJobGraphRequest request) {
+        List<JobGraphNode> nodes = request == null || request.nodes == null ? List.of() : request.nodes;
+        if (nodes.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A job graph needs at least one node");
+        }
+
+        Map<String, JobEntity> jobsByKey = new LinkedHashMap<>();
+        for (JobGraphNode node : nodes) {
+            if (node.key == null || node.key.isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every node needs a key");
+            }
+            if (node.idempotencyKey != null && !node.idempotencyKey.isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "idempotencyKey is not supported on graph nodes");
+            }
+            if (jobsByKey.putIfAbsent(node.key, newJob(node)) != null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Duplicate node key: " + node.key);
+            }
+        }
+
+        Map<String, Set<String>> parentIdsByChildId = new HashMap<>();
+        for (JobGraphNode node : nodes) {
+            if (node.dependsOn == null || node.dependsOn.isEmpty()) {
+                continue;
+            }
+            Set<String> parentIds = new LinkedHashSet<>();
+            for (String parentKey : node.dependsOn) {
+                JobEntity parent = jobsByKey.get(parentKey);
+                if (parent == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Node " + node.key + " depends on unknown node " + parentKey);
+                }
+                parentIds.add(parent.getId());
+            }
+            JobEntity child = jobsByKey.get(node.key);
+            child.setStatus(JobStatus.WAITING);
+            child.setPendingParents(parentIds.size());
+            parentIdsByChildId.put(child.getId(), parentIds);
+        }
+        checkAcyclic(nodes);
+
+        List<JobEntity> jobs = new ArrayList<>(jobsByKey.values());
+        insertTimer.record(() -> jobBatchWriter.insertGraph(jobs, parentIdsByChildId));
+        outboxRelay.signal(); // Committed, let the relay push the roots right away
+        countSubmitted(jobs);
+
+        Map<String, CreateJobResponse> responses = new LinkedHashMap<>();
+        jobsByKey.forEach((key, job) -> responses.put(key, new CreateJobResponse(job.getId(), job.getStatus().name())));
+        return new CreateJobGraphResponse(responses);
+    }
+
+    // Kahn's algorithm: repeatedly take the nodes nothing unvisited points at, nodes left over are on a cycle
+    private static void checkAcyclic(List<JobGraphNode> nodes) {
+        Map<String, Integer> parentCounts = new HashMap<>();
+        Map<String, List<String>> childKeys = new HashMap<>();
+        for (JobGraphNode node : nodes) {
+            Set<String> parents = node.dependsOn == null ? Set.of() : new HashSet<>(node.dependsOn);
+            parentCounts.put(node.key, parents.size());
+            for (String parent : parents) {
+                childKeys.computeIfAbsent(parent, key -> new ArrayList<>()).add(node.key);
+            }
+        }
+
+        Deque<String> ready = new ArrayDeque<>();
+        parentCounts.forEach((key, count) -> {
+            if (count == 0) {
+                ready.add(key);
+            }
+        });
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String key = ready.poll();
+            visited++;
+            for (String child : childKeys.getOrDefault(key, List.of())) {
+                if (parentCounts.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (visited < nodes.size()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The job graph has a cycle");
+        }
+    }
+
+    private void countSubmitted(List<JobEntity> jobs) {
+        for (JobEntity job : jobs) {
+            meterRegistry.counter("jobs.submitted",
+                    "priority", job.getPriority().name().toLowerCase(),
+                    "scheduled", String.valueOf(job.getAvailableAt().isAfter(job.getCreatedAt()))).increment();
+        }
+    }
+
+    // Jobs and outbox rows in one transaction
+    private void insert(List<JobEntity> jobs) {
+        if (!jobs.isEmpty()) {
+            insertTimer.record(() -> jobBatchWriter.insertAll(jobs));
+        }
+    }
+
+    // The jobs that still need inserting: no key, or a key with no existing job that is not repeated earlier in the batch
+    private static List<JobEntity> newJobs(List<JobEntity> jobs, Map<String, CreateJobResponse> existing) {
+        List<JobEntity> newJobs = new ArrayList<>(jobs.size());
+        Set<String> batchKeys = new HashSet<>();
+        for (JobEntity job : jobs) {
+            String key = job.getIdempotencyKey();
+            if (key == null || (!existing.containsKey(key) && batchKeys.add(key))) {
+                newJobs.add(job);
+            }
+        }
+        return newJobs;
+    }
+
+    // One response per request: the existing job for a known key, the first job of the batch for a repeated key, else the new job
+    private static List<CreateJobResponse> responses(List<JobEntity> jobs, Map<String, CreateJobResponse> existing) {
+        List<CreateJobResponse> responses = new ArrayList<>(jobs.size());
+        Map<String, CreateJobResponse> byKey = new HashMap<>(existing);
+        for (JobEntity job : jobs) {
+            String key = job.getIdempotencyKey();
+            CreateJobResponse response = key == null ? null : byKey.get(key);
+            if (response == null) {
+                response = new CreateJobResponse(job.getId(), job.getStatus().name());
+                if (key != null) {
+                    byKey.put(key, response);
+                }
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    // Put a FAILED job back on the queue, returns false if it does not exist or is not FAILED
+    public boolean requeue(String jobId, boolean resetAttempts) {
+        boolean requeued = jobBatchWriter.requeue(jobId, resetAttempts);
+        if (requeued) {
+            jobStatusCache.evict(jobId); // The cached FAILED status is stale now
+            outboxRelay.signal();
+        }
+        return requeued;
+    }
+
+    // Build a new PENDING job from a request, filling in defaults for missing fields
+    private JobEntity newJob(CreateJobRequest request) {
+        // Generate a unique job ID
+        String jobId = UUID.randomUUID().toString();
+
+        String jobType = (request.type == null || request.type.isEmpty()) ? "DEFAULT" : request.type;
+        String jobPayload = (request.payload == null) ? "" : request.payload;
+        JobPriority jobPriority = parsePriority(request.priority);
+
+        JobEntity job = new JobEntity(jobId, jobType, jobPayload, jobPriority);
+        job.setIdempotencyKey(idempotencyKey(request.idempotencyKey));
+        Instant runAt = runAt(request, job.getCreatedAt());
+        if (runAt != null) {
+            job.setAvailableAt(runAt); // Scheduled, not claimable before runAt
+        }
+        return job;
+    }
+
+    // When a scheduled job should run, null if it should run right away
+    // runAt is absolute, delayMs is relative to the job's creation, setting both or a negative delay is rejected with 400
+    private Instant runAt(CreateJobRequest request, Instant createdAt) {
+        if (request.runAt != null && request.delayMs != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Set either runAt or delayMs, not both");
+        }
+        if (request.delayMs != null) {
+            if (request.delayMs < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "delayMs must not be negative");
+            }
+            return createdAt.plusMillis(request.delayMs);
+        }
+        if (request.runAt != null && request.runAt.isAfter(createdAt)) {
+            return request.runAt;
+        }
+        return null; // A runAt in the past just means now
+    }
+
+    // Blank means no key, keys longer than idempotency.max-key-length are rejected with 400
+    private String idempotencyKey(String key) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        if (key.length() > idempotencyProperties.getMaxKeyLength()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "idempotencyKey is longer than " + idempotencyProperties.getMaxKeyLength() + " characters");
+        }
+        return key;
+    }
+
+    // Missing priority means NORMAL, anything that isn't HIGH, NORMAL or LOW is rejected with 400
+    private JobPriority parsePriority(String priority) {
+        if (priority == null || priority.isBlank()) {
+            return JobPriority.NORMAL;
+        }
+        try {
+            return JobPriority.valueOf(priority.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown priority: " + priority);
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.harry.jobservice.jobs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Settings for the job status cache behind GET /jobs/{id}, bound from the "status-cache.*" keys in application.yml
+// ttl should match worker.status-cache-ttl, it bounds how long a missed write-through can leave a stale status
+
+@ConfigurationProperties(prefix = "status-cache")
+public class StatusCacheProperties {
+
+    private boolean enabled = true; // false reads every poll straight from Postgres
+    private Duration ttl = Duration.ofMinutes(10); // Expiry of each job:status:<id> hash, refreshed on every write
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    public Duration getTtl() {
+        return ttl;
+    }
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+}
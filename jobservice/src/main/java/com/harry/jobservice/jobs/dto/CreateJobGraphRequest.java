@@ -0,0 +1,12 @@
+package com.harry.jobservice.jobs.dto;
+
+import java.util.List;
+
+// DTO for POST /jobs/graph
+// The nodes of a job graph (a DAG), edges are given by each node's dependsOn
+// e.g. fetch -> transform-1..N -> aggregate is one fetch node, N transform nodes depending on "fetch"
+// and one aggregate node depending on every transform
+
+public class CreateJobGraphRequest {
+    public List<JobGraphNode> nodes;
+}
@@ -0,0 +1,14 @@
+package com.harry.jobservice.jobs.dto;
+
+import java.util.Map;
+
+// DTO for the POST /jobs/graph response
+// Node key -> the job created for it (PENDING for roots, WAITING for the rest), in request order
+
+public class CreateJobGraphResponse {
+    public Map<String, CreateJobResponse> jobs;
+
+    public CreateJobGraphResponse(Map<String, CreateJobResponse> jobs) {
+        this.jobs = jobs;
+    }
+}
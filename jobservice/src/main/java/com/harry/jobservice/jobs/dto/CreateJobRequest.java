@@ -1,7 +1,11 @@
 package com.harry.jobservice.jobs.dto;
 
+import java.time.Instant;
+
 // DTO for creating a new job request
-// Contains fields for job type and payload
+// Contains fields for job type, payload and priority (HIGH, NORMAL or LOW, defaults to NORMAL)
+// Optionally runAt (ISO-8601 instant) or delayMs to schedule the job for later, at most one of the two
+// Optionally idempotencyKey: a retried request with the same key returns the first job instead of creating another
 // Used in API requests to create jobs
 // No validation or business logic included
 // Simple data carrier class
@@ -13,4 +17,8 @@ package com.harry.jobservice.jobs.dto;
 public class CreateJobRequest {
     public String type;
     public String payload;
+    public String priority;
+    public Instant runAt;
+    public Long delayMs;
+    public String idempotencyKey;
 }
@@ -0,0 +1,24 @@
+package com.harry.jobservice.jobs.dto;
+
+import java.time.Instant;
+
+// DTO for GET /jobs/{id}/attempts
+// One attempt of a job as the worker recorded it in job_attempts, error is null unless the attempt failed
+
+public class JobAttemptResponse {
+    public int attempt;
+    public String workerId;
+    public String outcome;
+    public Instant startedAt;
+    public long durationMs;
+    public String error;
+
+    public JobAttemptResponse(int attempt, String workerId, String outcome, Instant startedAt, long durationMs, String error) {
+        this.attempt = attempt;
+        this.workerId = workerId;
+        this.outcome = outcome;
+        this.startedAt = startedAt;
+        this.durationMs = durationMs;
+        this.error = error;
+    }
+}
@@ -0,0 +1,14 @@
+package com.harry.jobservice.jobs.dto;
+
+import java.util.List;
+
+// DTO for one job of a POST /jobs/graph request
+// The job's fields are the same as CreateJobRequest's, plus
+//   key       - names the node within the graph, unique in the request
+//   dependsOn - keys of the nodes that must COMPLETE before this one runs, empty or missing for a root
+// idempotencyKey is not supported on graph nodes
+
+public class JobGraphNode extends CreateJobRequest {
+    public String key;
+    public List<String> dependsOn;
+}
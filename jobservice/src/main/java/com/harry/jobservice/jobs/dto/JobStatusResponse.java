@@ -0,0 +1,35 @@
+package com.harry.jobservice.jobs.dto;
+
+import com.harry.jobservice.jobs.JobPriority;
+import com.harry.jobservice.jobs.JobStatus;
+
+import java.time.Instant;
+
+// DTO for GET /jobs/{id}
+// The status projection of a job: everything a poller needs, without the payload
+// Built from the job:status:<id> Redis hash, or straight from a JPQL constructor query on a cache miss
+
+public class JobStatusResponse {
+    public String id;
+    public String type;
+    public String status;
+    public int attempts;
+    public String priority;
+    public Instant createdAt;
+    public Instant availableAt;
+
+    public JobStatusResponse(String id, String type, String status, int attempts, String priority, Instant createdAt, Instant availableAt) {
+        this.id = id;
+        this.type = type;
+        this.status = status;
+        this.attempts = attempts;
+        this.priority = priority;
+        this.createdAt = createdAt;
+        this.availableAt = availableAt;
+    }
+
+    // Used by JobRepository.findStatusById
+    public JobStatusResponse(String id, String type, JobStatus status, int attempts, JobPriority priority, Instant createdAt, Instant availableAt) {
+        this(id, type, status.name(), attempts, priority == null ? JobPriority.NORMAL.name() : priority.name(), createdAt, availableAt);
+    }
+}
@@ -0,0 +1,53 @@
+package com.harry.jobservice.outbox;
+
+import com.harry.jobservice.jobs.JobPriority;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// One row per job ID that still has to be pushed to Redis
+// Written in the same transaction as the job itself, so a committed job is never lost
+// if Redis is slow or down, the OutboxRelay pushes it once Redis is reachable again
+// Mapped as an entity so ddl-auto creates the table, rows are written and drained with plain JDBC
+
+@Entity
+@Table(name = "job_outbox")
+public class OutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private String jobId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(updatable = false)
+    private JobPriority priority; // Lane the job ID is pushed onto
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(updatable = false)
+    private Instant availableAt; // When the job may run, rows further out than outbox.schedule-horizon stay in the table
+
+    protected OutboxEntity() {
+        // JPA requires a default constructor
+    }
+
+    public Long getId() {
+        return id;
+    }
+    public String getJobId() {
+        return jobId;
+    }
+    public JobPriority getPriority() {
+        return priority;
+    }
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    public Instant getAvailableAt() {
+        return availableAt;
+    }
+
+}
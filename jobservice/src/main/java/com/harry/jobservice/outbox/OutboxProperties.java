@@ -0,0 +1,35 @@
+package com.harry.jobservice.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Settings for the outbox relay, bound from the "outbox.*" keys in application.yml
+
+@ConfigurationProperties(prefix = "outbox")
+public class OutboxProperties {
+
+    private int batchSize = 500; // Outbox rows drained and pushed to Redis per transaction
+    private Duration pollInterval = Duration.ofMillis(200); // How often the relay checks the table when nobody signals it
+    private Duration scheduleHorizon = Duration.ofHours(1); // Scheduled jobs move to Redis this long before they are due, later ones wait in the table
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+    public void setPollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+    public Duration getScheduleHorizon() {
+        return scheduleHorizon;
+    }
+    public void setScheduleHorizon(Duration scheduleHorizon) {
+        this.scheduleHorizon = scheduleHorizon;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.harry.jobservice.outbox;
+
+import com.harry.jobservice.jobs.JobPriority;
+import com.harry.jobservice.queue.RedisJobPublisher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Drains the job_outbox table into the Redis queue in batches
+// Each batch is deleted with FOR UPDATE SKIP LOCKED and published (one RPUSH, or one pipeline of XADDs) inside the same transaction,
+// so if the push fails the rows come back and are retried, and several jobservice instances never push the same rows
+// Delivery is at-least-once, the worker's PENDING -> IN_PROGRESS claim ignores a job ID pushed twice
+// Scheduled jobs are drained once they are within outbox.schedule-horizon of their run time and ZADDed to the lane's retry ZSET,
+// so Redis only ever holds the next hour or so of scheduled work, however far ahead jobs are scheduled
+// Metrics: outbox.drain (timer, whole batch transaction), outbox.redis (timer, operation) and outbox.relayed (counter)
+
+@Component
+public class OutboxRelay implements CommandLineRunner {
+
+    // Removes the unlocked rows that are due soonest, up to the horizon, and hands back their job IDs in one statement
+    // Served by job_outbox_available_idx, rows scheduled further out are never scanned
+    private static final String DRAIN_SQL = """
+        DELETE FROM job_outbox
+        WHERE id IN (
+            SELECT id FROM job_outbox
+            WHERE available_at <= ?
+            ORDER BY available_at, id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING id, job_id, priority, available_at
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RedisJobPublisher jobPublisher;
+    private final OutboxProperties properties;
+    private final Timer drainTimer;
+    private final Timer publishTimer;
+    private final Timer scheduleTimer;
+    private final Counter relayedCounter;
+
+    private final Semaphore wakeUp = new Semaphore(0); // Released when new rows were committed so the relay does not wait a full poll interval
+    private volatile boolean running = true;
+    private Thread relayThread;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                       RedisJobPublisher jobPublisher, OutboxProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jobPublisher = jobPublisher;
+        this.properties = properties;
+        this.drainTimer = Timer.builder("outbox.drain").publishPercentileHistogram().register(meterRegistry);
+        this.publishTimer = Timer.builder("outbox.redis").tag("operation", "publish").publishPercentileHistogram().register(meterRegistry);
+        this.scheduleTimer = Timer.builder("outbox.redis").tag("operation", "schedule").publishPercentileHistogram().register(meterRegistry);
+        this.relayedCounter = Counter.builder("outbox.relayed").description("Job IDs moved from the outbox to Redis").register(meterRegistry);
+    }
+
+    @Override
+    public void run(String... args) {
+        relayThread = Thread.ofPlatform().name("outbox-relay").start(this::relayLoop);
+    }
+
+    // Tell the relay new outbox rows were committed
+    public void signal() {
+        if (wakeUp.availablePermits() == 0) {
+            wakeUp.release();
+        }
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                // Keep draining while batches come back full, there is more waiting
+                int relayed;
+                do {
+                    relayed = drainBatch();
+                } while (running && relayed == properties.getBatchSize());
+
+                wakeUp.tryAcquire(properties.getPollInterval().toMillis(), TimeUnit.MILLISECONDS);
+                wakeUp.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.out.println("Outbox relay error: " + e.getMessage());
+                try {
+                    Thread.sleep(1000); // Redis or Postgres is unhappy, the rows stay in the outbox until the next try
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Move one batch from the outbox to Redis, returns how many job IDs were pushed
+    int drainBatch() {
+        Instant now = Instant.now();
+        Timestamp horizon = Timestamp.from(now.plus(properties.getScheduleHorizon()));
+
+        long start = System.nanoTime();
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<OutboxRow> rows = jdbcTemplate.query(DRAIN_SQL,
+                    (rs, rowNum) -> new OutboxRow(rs.getLong("id"), rs.getString("job_id"), rs.getString("priority"),
+                            rs.getTimestamp("available_at").toInstant()),
+                    horizon, properties.getBatchSize());
+
+            // Due rows are pushed onto their lane, one push per lane
+            // RETURNING has no order so sort to keep submission order within each lane
+            Map<JobPriority, List<String>> dueByPriority = rows.stream()
+                    .filter(row -> !row.availableAt().isAfter(now))
+                    .sorted((a, b) -> Long.compare(a.id(), b.id()))
+                    .collect(Collectors.groupingBy(OutboxRow::lane, () -> new EnumMap<>(JobPriority.class),
+                            Collectors.mapping(OutboxRow::jobId, Collectors.toList())));
+
+            // Rows not due yet are scheduled with one ZADD per lane, scored by their run time
+            Map<JobPriority, Map<String, Long>> scheduledByPriority = rows.stream()
+                    .filter(row -> row.availableAt().isAfter(now))
+                    .collect(Collectors.groupingBy(OutboxRow::lane, () -> new EnumMap<>(JobPriority.class),
+                            Collectors.toMap(OutboxRow::jobId, row -> row.availableAt().toEpochMilli(), (a, b) -> a)));
+
+            // Both throw on failure, which rolls the delete back
+            dueByPriority.forEach((priority, jobIds) -> publishTimer.record(() -> jobPublisher.publish(priority, jobIds)));
+            scheduledByPriority.forEach((priority, runAts) -> scheduleTimer.record(() -> jobPublisher.schedule(priority, runAts)));
+            return rows.size();
+        });
+        if (relayed == null || relayed == 0) {
+            return 0; // Idle polls would drown the drain timer
+        }
+        drainTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        relayedCounter.increment(relayed);
+        return relayed;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        signal();
+        if (relayThread != null) {
+            relayThread.join(5000);
+        }
+    }
+
+    private record OutboxRow(long id, String jobId, String priority, Instant availableAt) {
+        // Rows written before priorities existed have no priority and go to the NORMAL lane
+        JobPriority lane() {
+            return priority == null ? JobPriority.NORMAL : JobPriority.valueOf(priority);
+        }
+    }
+
+}
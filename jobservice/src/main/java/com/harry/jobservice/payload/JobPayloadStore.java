@@ -0,0 +1,118 @@
+package com.harry.jobservice.payload;
+
+import com.harry.jobservice.jobs.JobEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Claim-check store for large job payloads
+//   job_payloads (job_id, encoding, size, data) - deflate compressed payloads longer than payload.inline-limit characters
+// Such jobs are inserted with jobs.payload NULL and payload_external set, every query that lists or claims jobs
+// then only reads small rows, the worker loads the payload when its handler opens it
+// Short payloads stay inline in jobs.payload, one extra lookup per job would cost more than it saves
+
+@Component
+public class JobPayloadStore {
+    private static final String DEFLATE = "deflate"; // Only encoding written so far, the column leaves room for others
+
+    private static final int JDBC_BATCH_SIZE = 100; // Rows per JDBC batch, each can be megabytes
+
+    private static final String INSERT_SQL = """
+        INSERT INTO job_payloads (job_id, encoding, size, data)
+        VALUES (?, ?, ?, ?)
+        """;
+
+    private static final String FIND_SQL = """
+        SELECT payload, payload_external FROM jobs WHERE id = ?
+        UNION ALL
+        SELECT payload, payload_external FROM jobs_archive WHERE id = ?
+        LIMIT 1
+        """;
+
+    private static final String DATA_SQL = "SELECT encoding, data FROM job_payloads WHERE job_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PayloadProperties properties;
+
+    public JobPayloadStore(JdbcTemplate jdbcTemplate, PayloadProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    // Marks the jobs whose payload is over the limit as external and stores those payloads compressed
+    // Runs inside JobBatchWriter's transaction, before the jobs themselves are inserted
+    public void storeLarge(List<JobEntity> jobs) {
+        List<Object[]> rows = new ArrayList<>();
+        for (JobEntity job : jobs) {
+            if (job.getPayload() != null && job.getPayload().length() > properties.getInlineLimit()) {
+                byte[] payload = job.getPayload().getBytes(StandardCharsets.UTF_8);
+                rows.add(new Object[] { job.getId(), DEFLATE, payload.length, compress(payload) });
+                job.setPayloadExternal(true);
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows, JDBC_BATCH_SIZE, (ps, row) -> {
+                ps.setString(1, (String) row[0]);
+                ps.setString(2, (String) row[1]);
+                ps.setInt(3, (Integer) row[2]);
+                ps.setBytes(4, (byte[]) row[3]);
+            });
+        }
+    }
+
+    // How to write a job's payload to a response, external ones are decompressed while they are copied
+    // Empty if the job does not exist (in jobs or jobs_archive), so GET /jobs/{id}/payload can answer 404 before streaming
+    public Optional<PayloadWriter> find(String jobId) {
+        return jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> {
+            if (!rs.getBoolean("payload_external")) {
+                String payload = rs.getString("payload");
+                return (PayloadWriter) out -> out.write((payload == null ? "" : payload).getBytes(StandardCharsets.UTF_8));
+            }
+            return (PayloadWriter) out -> writeExternal(jobId, out);
+        }, jobId, jobId).stream().findFirst();
+    }
+
+    private void writeExternal(String jobId, OutputStream out) {
+        jdbcTemplate.query(DATA_SQL, rs -> {
+            if (!DEFLATE.equals(rs.getString("encoding"))) {
+                throw new IllegalStateException("Unknown payload encoding " + rs.getString("encoding") + " for job " + jobId);
+            }
+            try (InputStream in = new InflaterInputStream(rs.getBinaryStream("data"))) {
+                in.transferTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, jobId);
+    }
+
+    private byte[] compress(byte[] payload) {
+        Deflater deflater = new Deflater(properties.getCompressionLevel());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, payload.length / 4));
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory streams do not fail
+        } finally {
+            deflater.end(); // Frees the native zlib buffers now instead of at GC
+        }
+        return compressed.toByteArray();
+    }
+
+    // Copies one payload to the response body
+    public interface PayloadWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+}
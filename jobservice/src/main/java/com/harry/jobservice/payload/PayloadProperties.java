@@ -0,0 +1,26 @@
+package com.harry.jobservice.payload;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Settings for large payload storage, bound from the "payload.*" keys in application.yml
+
+@ConfigurationProperties(prefix = "payload")
+public class PayloadProperties {
+
+    private int inlineLimit = 8192; // Payloads longer than this many characters go to job_payloads, shorter ones stay in jobs.payload
+    private int compressionLevel = 1; // Deflate level 1 (fastest) to 9 (smallest) for job_payloads.data
+
+    public int getInlineLimit() {
+        return inlineLimit;
+    }
+    public void setInlineLimit(int inlineLimit) {
+        this.inlineLimit = inlineLimit;
+    }
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.harry.jobservice.queue;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Which queue backend the workers consume from, bound from the "queue.*" keys in application.yml
+// Must match worker.queue-backend on the jobworker side
+//   redis    - job IDs are pushed to queue:jobs through the outbox relay (default)
+//   stream   - job IDs are XADDed to stream:jobs through the outbox relay
+//   postgres - the jobs table is the queue, new jobs only send NOTIFY jobs_pending
+
+@ConfigurationProperties(prefix = "queue")
+public class QueueProperties {
+
+    private String backend = "redis";
+    private int shards = 1; // Shards every lane is split into, job IDs are hashed across them (see QueueKeys), must match worker.queue-shards
+
+    public String getBackend() {
+        return backend;
+    }
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+    public int getShards() {
+        return shards;
+    }
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+    public boolean isStream() {
+        return "stream".equalsIgnoreCase(backend);
+    }
+    public boolean isPostgres() {
+        return "postgres".equalsIgnoreCase(backend);
+    }
+
+}
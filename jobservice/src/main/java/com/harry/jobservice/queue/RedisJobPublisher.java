@@ -0,0 +1,103 @@
+package com.harry.jobservice.queue;
+
+import com.harry.jobservice.jobs.JobPriority;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Pushes job IDs to the Redis queue the workers consume from
+//   redis  - one multi-value RPUSH onto the lane's list (queue:jobs, queue:jobs:high, queue:jobs:low)
+//   stream - one XADD per job onto the lane's stream (stream:jobs, ...)
+// Scheduled jobs that are not due yet go to the lane's retry ZSET instead, scored by when they may run
+// With queue.shards above 1 the IDs are split by QueueKeys.shardOf first, one push per shard, all sent in a single pipeline
+// See QueueKeys for the key of each priority and shard
+
+@Component
+public class RedisJobPublisher {
+    private static final byte[] JOB_ID_FIELD = "jobId".getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate redisTemplate;
+    private final QueueProperties queueProperties;
+
+    public RedisJobPublisher(StringRedisTemplate redisTemplate, QueueProperties queueProperties) {
+        this.redisTemplate = redisTemplate;
+        this.queueProperties = queueProperties;
+    }
+
+    // Throws if Redis rejects the push, callers rely on that to keep the IDs for another try
+    public void publish(JobPriority priority, List<String> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        if (queueProperties.isStream()) {
+            publishToStream(priority, jobIds);
+        } else if (queueProperties.getShards() <= 1) {
+            redisTemplate.opsForList().rightPushAll(QueueKeys.queue(priority, ""), jobIds);
+        } else {
+            Map<Integer, List<String>> byShard = byShard(jobIds);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                byShard.forEach((shard, ids) -> redis.rPush(QueueKeys.queue(priority, shard(shard)), ids.toArray(new String[0])));
+                return null; // Pipelined callbacks must return null
+            });
+        }
+    }
+
+    // One ZADD with every job ID scored by its run time (epoch millis), one ZADD per job when sharded
+    // The workers' retry promotion moves them into the queue once due
+    public void schedule(JobPriority priority, Map<String, Long> runAtByJobId) {
+        if (runAtByJobId.isEmpty()) {
+            return;
+        }
+        if (queueProperties.getShards() <= 1) {
+            Set<ZSetOperations.TypedTuple<String>> entries = new HashSet<>(runAtByJobId.size());
+            runAtByJobId.forEach((jobId, runAt) -> entries.add(ZSetOperations.TypedTuple.of(jobId, runAt.doubleValue())));
+            redisTemplate.opsForZSet().add(QueueKeys.retry(priority, ""), entries);
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            runAtByJobId.forEach((jobId, runAt) ->
+                    redis.zAdd(QueueKeys.retry(priority, shard(QueueKeys.shardOf(jobId, queueProperties.getShards()))), runAt.doubleValue(), jobId));
+            return null;
+        });
+    }
+
+    private void publishToStream(JobPriority priority, List<String> jobIds) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String jobId : jobIds) {
+                byte[] streamKey = QueueKeys.stream(priority, shard(QueueKeys.shardOf(jobId, queueProperties.getShards())))
+                        .getBytes(StandardCharsets.UTF_8);
+                MapRecord<byte[], byte[], byte[]> record = MapRecord.create(streamKey,
+                        Map.of(JOB_ID_FIELD, jobId.getBytes(StandardCharsets.UTF_8)));
+                connection.streamCommands().xAdd(record); // No MAXLEN, trimming could drop undelivered entries, workers XDEL what they acknowledged
+            }
+            return null; // Pipelined callbacks must return null
+        });
+    }
+
+    // Job IDs grouped by shard, submission order is kept within each shard
+    private Map<Integer, List<String>> byShard(List<String> jobIds) {
+        Map<Integer, List<String>> byShard = new HashMap<>();
+        for (String jobId : jobIds) {
+            byShard.computeIfAbsent(QueueKeys.shardOf(jobId, queueProperties.getShards()), shard -> new ArrayList<>()).add(jobId);
+        }
+        return byShard;
+    }
+
+    private String shard(int shard) {
+        return QueueKeys.shard(shard, queueProperties.getShards());
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.harry.jobservice.results;
+
+import com.harry.jobservice.jobs.dto.JobAttemptResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.InflaterInputStream;
+
+// Read side of the execution history the workers write
+//   job_results  - output of completed jobs, kept until expires_at (worker.result-ttl)
+//   job_attempts - one row per attempt, oldest first
+// Results are served through a bounded in-memory LRU cache (results.cache-max-bytes / results.cache-max-entries),
+// entries are kept decompressed and dropped after results.cache-ttl, a result polled by many clients is read from Postgres once
+// Missing results are not cached, a job that is still running may complete a moment later
+// Metrics: results.cache (counter, outcome hit or miss)
+
+@Component
+public class JobResultStore {
+    private static final String IDENTITY = "identity";
+    private static final String DEFLATE = "deflate";
+
+    private static final String RESULT_SQL = "SELECT encoding, data, expires_at FROM job_results WHERE job_id = ? AND expires_at > now()";
+
+    private static final String ATTEMPTS_SQL = """
+        SELECT attempt, worker_id, outcome, started_at, duration_ms, error
+        FROM job_attempts WHERE job_id = ?
+        ORDER BY attempt, started_at
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ResultProperties properties;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    // Access ordered, so iteration starts at the least recently read result, guarded by its own lock
+    private final LinkedHashMap<String, CachedResult> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes; // Sum of the cached results' lengths
+
+    public JobResultStore(JdbcTemplate jdbcTemplate, ResultProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.cacheHits = Counter.builder("results.cache").tag("outcome", "hit").description("GET /jobs/{id}/result served from memory").register(meterRegistry);
+        this.cacheMisses = Counter.builder("results.cache").tag("outcome", "miss").description("GET /jobs/{id}/result read from Postgres").register(meterRegistry);
+    }
+
+    // The job's result as the handler set it, empty if it has none, has not completed yet or the result expired
+    public Optional<byte[]> findResult(String jobId) {
+        Instant now = Instant.now();
+        CachedResult cached = cached(jobId, now);
+        if (cached != null) {
+            cacheHits.increment();
+            return Optional.of(cached.data());
+        }
+        cacheMisses.increment();
+
+        Optional<CachedResult> loaded = jdbcTemplate.query(RESULT_SQL, (rs, rowNum) -> {
+            byte[] data = decode(jobId, rs.getString("encoding"), rs.getBytes("data"));
+            Instant cacheUntil = now.plus(properties.getCacheTtl());
+            Instant expiresAt = rs.getTimestamp("expires_at").toInstant();
+            return new CachedResult(data, cacheUntil.isBefore(expiresAt) ? cacheUntil : expiresAt);
+        }, jobId).stream().findFirst();
+        loaded.ifPresent(result -> put(jobId, result));
+        return loaded.map(CachedResult::data);
+    }
+
+    // Every recorded attempt of the job, empty for unknown jobs and for jobs that never ran
+    public List<JobAttemptResponse> findAttempts(String jobId) {
+        return jdbcTemplate.query(ATTEMPTS_SQL, (rs, rowNum) -> new JobAttemptResponse(
+                rs.getInt("attempt"),
+                rs.getString("worker_id"),
+                rs.getString("outcome"),
+                rs.getTimestamp("started_at").toInstant(),
+                rs.getLong("duration_ms"),
+                rs.getString("error")), jobId);
+    }
+
+    private CachedResult cached(String jobId, Instant now) {
+        synchronized (cache) {
+            CachedResult cached = cache.get(jobId);
+            if (cached == null) {
+                return null;
+            }
+            if (!cached.until().isAfter(now)) {
+                cache.remove(jobId);
+                cachedBytes -= cached.data().length;
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    // Adds a result and evicts the least recently read ones until both limits hold again
+    private void put(String jobId, CachedResult result) {
+        if (result.data().length > properties.getCacheMaxBytes() / 8) {
+            return; // One huge result would push out most of the cache, it is read from Postgres each time instead
+        }
+        synchronized (cache) {
+            CachedResult previous = cache.put(jobId, result);
+            if (previous != null) {
+                cachedBytes -= previous.data().length;
+            }
+            cachedBytes += result.data().length;
+            Iterator<Map.Entry<String, CachedResult>> eldest = cache.entrySet().iterator();
+            while ((cachedBytes > properties.getCacheMaxBytes() || cache.size() > properties.getCacheMaxEntries()) && eldest.hasNext()) {
+                cachedBytes -= eldest.next().getValue().data().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static byte[] decode(String jobId, String encoding, byte[] data) {
+        if (IDENTITY.equals(encoding)) {
+            return data;
+        }
+        if (!DEFLATE.equals(encoding)) {
+            throw new IllegalStateException("Unknown result encoding " + encoding + " for job " + jobId);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // A decompressed result and until when it may be served from memory
+    private record CachedResult(byte[] data, Instant until) {}
+
+}
@@ -0,0 +1,49 @@
+package com.harry.jobservice.results;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Settings for serving job results and attempt history, bound from the "results.*" keys in application.yml
+
+@ConfigurationProperties(prefix = "results")
+public class ResultProperties {
+
+    private long cacheMaxBytes = 64L * 1024 * 1024; // Decompressed results kept in memory per instance at most
+    private int cacheMaxEntries = 10_000; // and at most this many of them
+    private Duration cacheTtl = Duration.ofMinutes(1); // A cached result is read again after this, a job requeued and completed again shows its new result
+    private int purgeBatchSize = 10_000; // Expired job_results rows deleted per statement by the archiver
+    private Duration attemptRetention = Duration.ofDays(30); // job_attempts rows older than this are deleted by the archiver, 0 keeps them
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+    public int getPurgeBatchSize() {
+        return purgeBatchSize;
+    }
+    public void setPurgeBatchSize(int purgeBatchSize) {
+        this.purgeBatchSize = purgeBatchSize;
+    }
+    public Duration getAttemptRetention() {
+        return attemptRetention;
+    }
+    public void setAttemptRetention(Duration attemptRetention) {
+        this.attemptRetention = attemptRetention;
+    }
+
+}
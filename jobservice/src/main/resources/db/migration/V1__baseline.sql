@@ -0,0 +1,70 @@
+-- Schema as Hibernate's ddl-auto and the old schema.sql left it, now owned by Flyway
+-- Idempotent, databases created by the old setup are baselined at version 0 and get this applied on top
+
+CREATE TABLE IF NOT EXISTS jobs (
+    id varchar(255) NOT NULL PRIMARY KEY,
+    type varchar(255) NOT NULL,
+    payload text,
+    status varchar(255) NOT NULL,
+    attempts integer NOT NULL,
+    priority varchar(255),
+    created_at timestamp(6) with time zone NOT NULL,
+    available_at timestamp(6) with time zone,
+    idempotency_key varchar(255),
+    lease_owner varchar(255),
+    lease_expires_at timestamp(6) with time zone
+);
+
+-- Columns ddl-auto added over time, in case an older database never saw them
+ALTER TABLE jobs ADD COLUMN IF NOT EXISTS priority varchar(255);
+ALTER TABLE jobs ADD COLUMN IF NOT EXISTS available_at timestamp(6) with time zone;
+ALTER TABLE jobs ADD COLUMN IF NOT EXISTS idempotency_key varchar(255);
+ALTER TABLE jobs ADD COLUMN IF NOT EXISTS lease_owner varchar(255);
+ALTER TABLE jobs ADD COLUMN IF NOT EXISTS lease_expires_at timestamp(6) with time zone;
+
+-- Hibernate generated CHECK constraints from the enums, new statuses and priorities are added in Java, not here
+ALTER TABLE jobs DROP CONSTRAINT IF EXISTS jobs_status_check;
+ALTER TABLE jobs DROP CONSTRAINT IF EXISTS jobs_priority_check;
+
+CREATE TABLE IF NOT EXISTS job_outbox (
+    id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    job_id varchar(255) NOT NULL,
+    priority varchar(255),
+    created_at timestamp(6) with time zone NOT NULL,
+    available_at timestamp(6) with time zone
+);
+
+ALTER TABLE job_outbox ADD COLUMN IF NOT EXISTS priority varchar(255);
+ALTER TABLE job_outbox ADD COLUMN IF NOT EXISTS available_at timestamp(6) with time zone;
+ALTER TABLE job_outbox DROP CONSTRAINT IF EXISTS job_outbox_priority_check;
+
+-- Postgres queue mode claims the oldest ready PENDING rows, this keeps that lookup
+-- proportional to the backlog instead of the whole job history
+CREATE INDEX IF NOT EXISTS jobs_pending_available_idx ON jobs (available_at) WHERE status = 'PENDING';
+
+-- Each priority lane is claimed separately in postgres mode (WHERE priority = ? ORDER BY available_at)
+CREATE INDEX IF NOT EXISTS jobs_pending_priority_idx ON jobs (priority, available_at) WHERE status = 'PENDING';
+
+-- Jobs queued before priorities existed belong to the NORMAL lane
+UPDATE jobs SET priority = 'NORMAL' WHERE priority IS NULL AND status = 'PENDING';
+
+-- The outbox relay drains rows in available_at order up to the scheduling horizon,
+-- jobs scheduled far ahead sit in the table without slowing that down
+CREATE INDEX IF NOT EXISTS job_outbox_available_idx ON job_outbox (available_at, id);
+
+-- Outbox rows written before scheduling existed are due right away
+UPDATE job_outbox SET available_at = created_at WHERE available_at IS NULL;
+
+-- Workers' lease reaper looks for IN_PROGRESS rows whose lease ran out,
+-- this keeps that lookup proportional to the jobs currently running
+CREATE INDEX IF NOT EXISTS jobs_lease_expiry_idx ON jobs (lease_expires_at) WHERE status = 'IN_PROGRESS';
+
+-- Jobs claimed before leases existed have no expiry, give their workers 5 minutes before they are reaped
+UPDATE jobs SET lease_expires_at = now() + interval '5 minutes' WHERE status = 'IN_PROGRESS' AND lease_expires_at IS NULL;
+
+-- GET /dlq and the bulk requeue page through FAILED jobs by id,
+-- this keeps every page an index range scan however large the job history gets
+CREATE INDEX IF NOT EXISTS jobs_failed_idx ON jobs (id) WHERE status = 'FAILED';
+
+-- One job per idempotency key, the backstop behind the Redis SET NX pre-check
+CREATE UNIQUE INDEX IF NOT EXISTS jobs_idempotency_key_idx ON jobs (idempotency_key) WHERE idempotency_key IS NOT NULL;
@@ -0,0 +1,24 @@
+-- Finished jobs leave the jobs table once they are older than archive.completed-retention / archive.failed-retention,
+-- so jobs only holds live work and recent history and its indexes stay small however many jobs have ever run
+-- They land here, partitioned by month of created_at, and archive.history-retention drops whole months at a time
+-- Partitions are created by the JobArchiver before it moves rows into them (jobs_archive_YYYY_MM)
+-- No primary key: on a partitioned table it would have to include created_at, the id index is enough for lookups
+CREATE TABLE jobs_archive (
+    id varchar(255) NOT NULL,
+    type varchar(255) NOT NULL,
+    payload text,
+    status varchar(255) NOT NULL,
+    attempts integer NOT NULL,
+    priority varchar(255),
+    created_at timestamp(6) with time zone NOT NULL,
+    available_at timestamp(6) with time zone,
+    idempotency_key varchar(255),
+    archived_at timestamp(6) with time zone NOT NULL DEFAULT now()
+) PARTITION BY RANGE (created_at);
+
+-- GET /jobs/{id} falls back to the archive for jobs no longer in jobs
+CREATE INDEX jobs_archive_id_idx ON jobs_archive (id);
+
+-- The archiver takes the oldest finished jobs of one status at a time (WHERE status = ? AND created_at < ? ORDER BY created_at),
+-- a range scan over only the finished rows
+CREATE INDEX jobs_finished_created_idx ON jobs (status, created_at) WHERE status IN ('COMPLETED', 'FAILED');
@@ -0,0 +1,12 @@
+-- Job graphs (POST /jobs/graph): a job with parents is inserted WAITING with pending_parents set to its number of parents
+-- When a worker completes a job it deletes the job's outgoing edges and subtracts them from each child's counter
+-- in the same statement as the completion, a child whose counter reaches 0 becomes PENDING and is queued right away
+ALTER TABLE jobs ADD COLUMN pending_parents integer NOT NULL DEFAULT 0;
+
+-- One row per edge still to be released, looked up by parent when the parent completes
+-- No foreign keys, finished jobs leave the jobs table through the archiver
+CREATE TABLE job_dependencies (
+    parent_id varchar(255) NOT NULL,
+    child_id varchar(255) NOT NULL,
+    PRIMARY KEY (parent_id, child_id)
+);
@@ -0,0 +1,16 @@
+-- Claim-check storage for large payloads: payloads over payload.inline-limit characters are stored compressed in job_payloads
+-- and jobs.payload stays NULL with payload_external set, so claims, polls and DLQ pages only carry the small columns
+ALTER TABLE jobs ADD COLUMN payload_external boolean NOT NULL DEFAULT false;
+ALTER TABLE jobs_archive ADD COLUMN payload_external boolean NOT NULL DEFAULT false;
+
+-- One row per externally stored payload, written in the job's insert transaction and kept while the job is archived
+-- encoding names the compression (deflate), size is the payload's length in bytes before compression
+CREATE TABLE job_payloads (
+    job_id varchar(255) NOT NULL PRIMARY KEY,
+    encoding varchar(16) NOT NULL,
+    size integer NOT NULL,
+    data bytea NOT NULL
+);
+
+-- The data is already compressed, TOAST should store it out of line without trying pglz on it again
+ALTER TABLE job_payloads ALTER COLUMN data SET STORAGE EXTERNAL;
@@ -0,0 +1,32 @@
+-- Execution history: one row per attempt a worker ran, appended in batches and never updated
+-- attempt is 1-based, outcome is completed, retried, dead_lettered, unhandled or lease_lost, error holds why a failed attempt failed
+CREATE TABLE job_attempts (
+    id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    job_id varchar(255) NOT NULL,
+    attempt integer NOT NULL,
+    worker_id varchar(255) NOT NULL,
+    outcome varchar(32) NOT NULL,
+    started_at timestamp(6) with time zone NOT NULL,
+    duration_ms bigint NOT NULL,
+    error text
+);
+
+-- GET /jobs/{id}/attempts
+CREATE INDEX job_attempts_job_idx ON job_attempts (job_id, attempt);
+
+-- Rows arrive in started_at order, a BRIN index is a few pages and is all the archiver needs to trim old history
+CREATE INDEX job_attempts_started_idx ON job_attempts USING brin (started_at);
+
+-- Output of completed jobs for GET /jobs/{id}/result, written in the completion transaction
+-- Results over worker.result-compression-threshold bytes are deflate compressed (encoding deflate, otherwise identity),
+-- size is the length before compression, rows past expires_at are deleted by the archiver
+CREATE TABLE job_results (
+    job_id varchar(255) NOT NULL PRIMARY KEY,
+    encoding varchar(16) NOT NULL,
+    size integer NOT NULL,
+    data bytea NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    expires_at timestamp(6) with time zone NOT NULL
+);
+
+CREATE INDEX job_results_expires_idx ON job_results (expires_at);
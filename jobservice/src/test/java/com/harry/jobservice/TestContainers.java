@@ -0,0 +1,44 @@
+package com.harry.jobservice;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+// Throwaway Postgres and Redis for the tests that need the real SQL and Lua, started once per JVM
+// Every test registers the same properties, so Spring reuses one application context for all of them
+// The archiver's background thread is off, tests that need it call JobArchiver.archive() themselves
+
+public final class TestContainers {
+    private static final String DB = "jobdb";
+    private static final String USER = "jobuser";
+    private static final String PASSWORD = "jobpass";
+
+    private static GenericContainer<?> postgres;
+    private static GenericContainer<?> redis;
+
+    private TestContainers() {
+    }
+
+    public static synchronized void register(DynamicPropertyRegistry registry) {
+        if (postgres == null) {
+            postgres = new GenericContainer<>("postgres:16")
+                    .withEnv("POSTGRES_DB", DB)
+                    .withEnv("POSTGRES_USER", USER)
+                    .withEnv("POSTGRES_PASSWORD", PASSWORD)
+                    .withExposedPorts(5432)
+                    .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*", 2)); // The first one is the init run
+            redis = new GenericContainer<>("redis:7")
+                    .withExposedPorts(6379)
+                    .waitingFor(Wait.forLogMessage(".*Ready to accept connections.*", 1));
+            postgres.start();
+            redis.start();
+        }
+        registry.add("spring.datasource.url", () -> "jdbc:postgresql://" + postgres.getHost() + ":" + postgres.getMappedPort(5432) + "/" + DB);
+        registry.add("spring.datasource.username", () -> USER);
+        registry.add("spring.datasource.password", () -> PASSWORD);
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", () -> redis.getMappedPort(6379));
+        registry.add("archive.enabled", () -> false);
+    }
+
+}
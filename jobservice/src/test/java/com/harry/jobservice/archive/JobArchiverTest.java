@@ -0,0 +1,126 @@
+package com.harry.jobservice.archive;
+
+import com.harry.jobservice.TestContainers;
+import com.harry.jobservice.jobs.JobBatchWriter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// MOVE_SQL, monthly partition creation and dropping with the default retentions (7d completed, 30d failed, 365d history),
+// and FAILED graph parents kept back while their children wait on them
+
+@SpringBootTest
+class JobArchiverTest {
+	private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyy_MM").withZone(ZoneOffset.UTC);
+
+	@DynamicPropertySource
+	static void containers(DynamicPropertyRegistry registry) {
+		TestContainers.register(registry);
+	}
+
+	@Autowired
+	private JobArchiver archiver;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private JobBatchWriter jobBatchWriter;
+
+	@Test
+	void movesOldFinishedJobsIntoTheirMonthsPartition() {
+		String completedOld = insertJob("COMPLETED", 40);
+		String completedOlder = insertJob("COMPLETED", 70);
+		String completedRecent = insertJob("COMPLETED", 1);
+		String failedRecent = insertJob("FAILED", 10);
+		String failedOld = insertJob("FAILED", 45);
+		String runningOld = insertJob("IN_PROGRESS", 40);
+
+		archiver.archive();
+
+		for (String kept : new String[] { completedRecent, failedRecent, runningOld }) {
+			assertEquals(1, count("jobs", kept), kept);
+			assertEquals(0, count("jobs_archive", kept), kept);
+		}
+		assertArchivedIn(completedOld, 40);
+		assertArchivedIn(completedOlder, 70);
+		assertArchivedIn(failedOld, 45);
+		assertEquals("COMPLETED", archiver.findStatus(completedOld).orElseThrow().status);
+	}
+
+	@Test
+	void dropsPartitionsOlderThanTheHistoryRetentionWithTheirPayloads() {
+		String ancient = insertJob("COMPLETED", 400);
+		jdbcTemplate.update("UPDATE jobs SET payload = NULL, payload_external = true WHERE id = ?", ancient);
+		jdbcTemplate.update("INSERT INTO job_payloads (job_id, encoding, size, data) VALUES (?, 'deflate', 1, ?)", ancient, new byte[] { 1 });
+
+		archiver.archive();
+
+		assertEquals(0, count("jobs", ancient));
+		assertEquals(0, count("jobs_archive", ancient));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM job_payloads WHERE job_id = ?", Integer.class, ancient));
+		assertNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, partition(400)));
+		assertTrue(archiver.findStatus(ancient).isEmpty());
+	}
+
+	@Test
+	void keepsFailedParentsWhoseChildrenStillWaitOnThem() {
+		String parent = insertJob("FAILED", 45);
+		String child = insertJob("WAITING", 45);
+		jdbcTemplate.update("UPDATE jobs SET pending_parents = 1 WHERE id = ?", child);
+		jdbcTemplate.update("INSERT INTO job_dependencies (parent_id, child_id) VALUES (?, ?)", parent, child);
+		String failedAlone = insertJob("FAILED", 45);
+
+		archiver.archive();
+
+		assertEquals(1, count("jobs", parent));
+		assertEquals(0, count("jobs_archive", parent));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM job_dependencies WHERE parent_id = ?", Integer.class, parent));
+		assertArchivedIn(failedAlone, 45);
+
+		assertTrue(jobBatchWriter.requeue(parent, true)); // Still in the DLQ, so the graph can go on
+		assertEquals("PENDING", jdbcTemplate.queryForObject("SELECT status FROM jobs WHERE id = ?", String.class, parent));
+		assertEquals("WAITING", jdbcTemplate.queryForObject("SELECT status FROM jobs WHERE id = ?", String.class, child));
+	}
+
+	private void assertArchivedIn(String jobId, int daysAgo) {
+		assertEquals(0, count("jobs", jobId), jobId);
+		assertEquals(partition(daysAgo), jdbcTemplate.queryForObject(
+				"SELECT tableoid::regclass::text FROM jobs_archive WHERE id = ?", String.class, jobId));
+		assertFalse(archiver.findStatus(jobId).isEmpty());
+	}
+
+	private int count(String table, String jobId) {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table + " WHERE id = ?", Integer.class, jobId);
+	}
+
+	private String insertJob(String status, int daysAgo) {
+		String id = UUID.randomUUID().toString();
+		Timestamp createdAt = Timestamp.from(Instant.now().minus(Duration.ofDays(daysAgo)));
+		jdbcTemplate.update("""
+				INSERT INTO jobs (id, type, payload, status, attempts, priority, created_at, available_at)
+				VALUES (?, 'TEST', 'hello', ?, 1, 'NORMAL', ?, ?)
+				""", id, status, createdAt, createdAt);
+		return id;
+	}
+
+	private static String partition(int daysAgo) {
+		return "jobs_archive_" + PARTITION_MONTH.format(Instant.now().minus(Duration.ofDays(daysAgo)));
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.harry.jobservice.dlq;
+
+import com.harry.jobservice.TestContainers;
+import com.harry.jobservice.dlq.dto.DeadJobResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Keyset paging over the FAILED rows and the batched bulk requeue, including rows another transaction holds locked
+
+@SpringBootTest
+class DlqServiceTest {
+
+	@DynamicPropertySource
+	static void containers(DynamicPropertyRegistry registry) {
+		TestContainers.register(registry);
+	}
+
+	@Autowired
+	private DlqService dlqService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void pagesVisitEveryFailedJobOnceInIdOrder() {
+		String type = uniqueType();
+		List<String> ids = insertFailed(type, 2500).stream().sorted().toList();
+
+		List<String> seen = new ArrayList<>();
+		String after = "";
+		List<DeadJobResponse> page;
+		do {
+			page = dlqService.page(after, type, 1000);
+			page.forEach(job -> seen.add(job.id));
+			if (!page.isEmpty()) {
+				after = page.get(page.size() - 1).id;
+			}
+		} while (page.size() == 1000);
+
+		assertEquals(ids, seen);
+	}
+
+	@Test
+	void bulkRequeueOfATypeRequeuesEveryBatch() {
+		String type = uniqueType();
+		insertFailed(type, 2500);
+		String otherType = uniqueType();
+		List<String> other = insertFailed(otherType, 3);
+
+		assertEquals(2500, dlqService.requeue(null, type));
+
+		assertEquals(0, countOfType(type, "FAILED"));
+		assertEquals(2500, countOfType(type, "PENDING"));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM jobs WHERE type = ? AND attempts <> 0", Integer.class, type));
+		assertEquals(3, countOfType(otherType, "FAILED"));
+		assertEquals(2, dlqService.requeue(other.subList(0, 2), null));
+		assertEquals(1, countOfType(otherType, "FAILED"));
+	}
+
+	@Test
+	void bulkRequeueWaitsForLockedRowsInsteadOfSkippingThem() throws Exception {
+		String type = uniqueType();
+		List<String> ids = insertFailed(type, 5).stream().sorted().toList();
+
+		try (Connection lock = dataSource.getConnection()) {
+			lock.setAutoCommit(false);
+			try (PreparedStatement ps = lock.prepareStatement("SELECT id FROM jobs WHERE id = ? FOR UPDATE")) {
+				ps.setString(1, ids.get(2));
+				ps.executeQuery().close();
+			}
+
+			CompletableFuture<Long> requeue = CompletableFuture.supplyAsync(() -> dlqService.requeue(null, type));
+			Thread.sleep(500);
+			assertFalse(requeue.isDone()); // Blocked on the locked row, not past it
+
+			lock.commit();
+			assertEquals(5, requeue.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(5, countOfType(type, "PENDING"));
+	}
+
+	@Test
+	void rowRequeuedWhileLockedEndsNeitherTheBatchNorTheRun() throws Exception {
+		String type = uniqueType();
+		List<String> ids = insertFailed(type, 5).stream().sorted().toList();
+
+		try (Connection lock = dataSource.getConnection()) {
+			lock.setAutoCommit(false);
+			try (PreparedStatement ps = lock.prepareStatement("UPDATE jobs SET status = 'PENDING' WHERE id = ?")) {
+				ps.setString(1, ids.get(0)); // Like a single requeue that commits while the bulk one waits for it
+				ps.executeUpdate();
+			}
+
+			CompletableFuture<Long> requeue = CompletableFuture.supplyAsync(() -> dlqService.requeue(null, type));
+			Thread.sleep(500);
+			lock.commit();
+			assertEquals(4, requeue.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(5, countOfType(type, "PENDING"));
+		assertTrue(dlqService.page("", type, 10).isEmpty());
+	}
+
+	private static String uniqueType() {
+		return "DLQ_" + UUID.randomUUID().toString().substring(0, 8); // The database is shared with the other tests
+	}
+
+	private List<String> insertFailed(String type, int count) {
+		List<String> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ids.add(UUID.randomUUID().toString());
+		}
+		jdbcTemplate.batchUpdate("""
+				INSERT INTO jobs (id, type, payload, status, attempts, priority, created_at, available_at)
+				VALUES (?, ?, 'hello', 'FAILED', 3, 'NORMAL', now(), now())
+				""", ids, 500, (ps, id) -> {
+			ps.setString(1, id);
+			ps.setString(2, type);
+		});
+		return ids;
+	}
+
+	private int countOfType(String type, String status) {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM jobs WHERE type = ? AND status = ?", Integer.class, type, status);
+	}
+
+}
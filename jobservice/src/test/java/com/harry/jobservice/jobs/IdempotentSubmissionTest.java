@@ -0,0 +1,106 @@
+package com.harry.jobservice.jobs;
+
+import com.harry.jobservice.TestContainers;
+import com.harry.jobservice.jobs.dto.CreateJobRequest;
+import com.harry.jobservice.jobs.dto.CreateJobResponse;
+import com.harry.jobservice.queue.QueueKeys;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Redis SET NX pre-check plus the unique index backstop in JobSubmissionService.submit
+
+@SpringBootTest
+class IdempotentSubmissionTest {
+
+	@DynamicPropertySource
+	static void containers(DynamicPropertyRegistry registry) {
+		TestContainers.register(registry);
+	}
+
+	@Autowired
+	private JobSubmissionService submissionService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private StringRedisTemplate redisTemplate;
+
+	@Test
+	void concurrentRequestsWithOneKeyCreateOneJob() throws Exception {
+		String key = "race-" + UUID.randomUUID();
+		int requests = 16;
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<CreateJobResponse>> responses = new ArrayList<>();
+		try (ExecutorService executor = Executors.newFixedThreadPool(requests)) {
+			for (int i = 0; i < requests; i++) {
+				responses.add(executor.submit(() -> {
+					start.await();
+					return submissionService.submit(List.of(request(key))).get(0);
+				}));
+			}
+			start.countDown();
+
+			Set<String> jobIds = responses.stream().map(IdempotentSubmissionTest::join).map(response -> response.jobId).collect(Collectors.toSet());
+			assertEquals(1, jobIds.size());
+			assertEquals(jobIds.iterator().next(), jdbcTemplate.queryForObject("SELECT id FROM jobs WHERE idempotency_key = ?", String.class, key));
+		}
+	}
+
+	@Test
+	void keyExpiredInRedisIsCaughtByTheUniqueIndex() {
+		String key = "expired-" + UUID.randomUUID();
+		CreateJobResponse first = submissionService.submit(List.of(request(key))).get(0);
+
+		redisTemplate.delete(QueueKeys.idempotency(key)); // Looks new to the pre-check, the INSERT hits jobs_idempotency_key_idx
+		CreateJobResponse second = submissionService.submit(List.of(request(key))).get(0);
+
+		assertEquals(first.jobId, second.jobId);
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM jobs WHERE idempotency_key = ?", Integer.class, key));
+	}
+
+	@Test
+	void repeatedKeyInOneBatchGetsTheFirstJob() {
+		String key = "batch-" + UUID.randomUUID();
+		List<CreateJobResponse> responses = submissionService.submit(List.of(request(key), request(null), request(key)));
+
+		assertEquals(responses.get(0).jobId, responses.get(2).jobId);
+		assertNotEquals(responses.get(0).jobId, responses.get(1).jobId);
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM jobs WHERE idempotency_key = ?", Integer.class, key));
+	}
+
+	private static <T> T join(Future<T> future) {
+		try {
+			return future.get();
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static CreateJobRequest request(String idempotencyKey) {
+		CreateJobRequest request = new CreateJobRequest();
+		request.type = "TEST";
+		request.payload = "hello";
+		request.idempotencyKey = idempotencyKey;
+		return request;
+	}
+
+}
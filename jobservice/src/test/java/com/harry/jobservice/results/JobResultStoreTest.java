@@ -0,0 +1,117 @@
+package com.harry.jobservice.results;
+
+import com.harry.jobservice.TestContainers;
+import com.harry.jobservice.jobs.dto.JobAttemptResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Reading job_results (identity and deflate rows, expiry, the in-memory cache) and job_attempts
+
+@SpringBootTest
+class JobResultStoreTest {
+
+	@DynamicPropertySource
+	static void containers(DynamicPropertyRegistry registry) {
+		TestContainers.register(registry);
+	}
+
+	@Autowired
+	private JobResultStore resultStore;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void readsIdentityAndDeflateResults() throws IOException {
+		byte[] small = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+		byte[] large = "{\"row\":42}".repeat(500).getBytes(StandardCharsets.UTF_8);
+		String identity = insertResult("identity", small.length, small, Duration.ofDays(7));
+		String deflate = insertResult("deflate", large.length, deflate(large), Duration.ofDays(7));
+
+		assertArrayEquals(small, resultStore.findResult(identity).orElseThrow());
+		assertArrayEquals(large, resultStore.findResult(deflate).orElseThrow());
+	}
+
+	@Test
+	void expiredAndMissingResultsAreEmpty() {
+		byte[] data = "done".getBytes(StandardCharsets.UTF_8);
+		String expired = insertResult("identity", data.length, data, Duration.ofSeconds(-1));
+
+		assertTrue(resultStore.findResult(expired).isEmpty());
+		assertTrue(resultStore.findResult(UUID.randomUUID().toString()).isEmpty());
+	}
+
+	@Test
+	void cachedResultIsServedWithoutPostgres() {
+		byte[] data = "cached".getBytes(StandardCharsets.UTF_8);
+		String jobId = insertResult("identity", data.length, data, Duration.ofDays(7));
+
+		assertArrayEquals(data, resultStore.findResult(jobId).orElseThrow());
+		jdbcTemplate.update("DELETE FROM job_results WHERE job_id = ?", jobId);
+
+		assertArrayEquals(data, resultStore.findResult(jobId).orElseThrow()); // Within results.cache-ttl
+	}
+
+	@Test
+	void attemptsComeBackOldestFirst() {
+		String jobId = UUID.randomUUID().toString();
+		Instant start = Instant.now().minus(Duration.ofMinutes(5));
+		insertAttempt(jobId, 2, "completed", start.plusSeconds(60), null); // Inserted out of order on purpose
+		insertAttempt(jobId, 1, "retried", start, "boom");
+
+		List<JobAttemptResponse> attempts = resultStore.findAttempts(jobId);
+
+		assertEquals(2, attempts.size());
+		assertEquals(1, attempts.get(0).attempt);
+		assertEquals("retried", attempts.get(0).outcome);
+		assertEquals("boom", attempts.get(0).error);
+		assertEquals(2, attempts.get(1).attempt);
+		assertEquals("worker-1", attempts.get(1).workerId);
+		assertNull(attempts.get(1).error);
+		assertTrue(resultStore.findAttempts(UUID.randomUUID().toString()).isEmpty());
+	}
+
+	private String insertResult(String encoding, int size, byte[] data, Duration ttl) {
+		String jobId = UUID.randomUUID().toString();
+		jdbcTemplate.update("""
+				INSERT INTO job_results (job_id, encoding, size, data, created_at, expires_at)
+				VALUES (?, ?, ?, ?, now(), ?)
+				""", jobId, encoding, size, data, Timestamp.from(Instant.now().plus(ttl)));
+		return jobId;
+	}
+
+	private void insertAttempt(String jobId, int attempt, String outcome, Instant startedAt, String error) {
+		jdbcTemplate.update("""
+				INSERT INTO job_attempts (job_id, attempt, worker_id, outcome, started_at, duration_ms, error)
+				VALUES (?, ?, 'worker-1', ?, ?, 15, ?)
+				""", jobId, attempt, outcome, Timestamp.from(startedAt), error);
+	}
+
+	private static byte[] deflate(byte[] data) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+			out.write(data);
+		}
+		return compressed.toByteArray();
+	}
+
+}
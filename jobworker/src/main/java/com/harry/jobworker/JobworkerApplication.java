@@ -2,9 +2,11 @@ package com.harry.jobworker;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableScheduling // Enable scheduling support in the application
+@ConfigurationPropertiesScan // Binds the worker.* settings in application.yml
 @SpringBootApplication
 public class JobworkerApplication {
 
@@ -0,0 +1,11 @@
+package com.harry.jobworker.handlers;
+
+// Which executor a JobHandler runs on
+// BLOCKING: mostly waiting on I/O (HTTP calls, queries, sleeps), runs on the job's own virtual thread
+// CPU_BOUND: keeps a core busy for its whole run, runs on a fixed pool of platform threads sized to the CPU count
+//            so a burst of such jobs cannot starve the consumers and the carrier threads behind the virtual ones
+
+public enum ExecutionMode {
+    BLOCKING,
+    CPU_BOUND
+}
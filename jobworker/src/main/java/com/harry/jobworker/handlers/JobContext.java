@@ -0,0 +1,55 @@
+package com.harry.jobworker.handlers;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPayloadStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// What a JobHandler gets to see of the job it is running
+// attempts is the number of earlier failed attempts, 0 on the first run
+// The payload is loaded when the handler asks for it, large ones come from job_payloads (see JobPayloadStore),
+// handlers that can process a stream should use openPayload() instead of holding the whole payload as a string
+// A handler that produces output hands it over with setResult(), it is stored with the completion and served by GET /jobs/{id}/result
+
+public record JobContext(String jobId, String type, int attempts, PayloadSource payloadSource, Output output) {
+
+    public static JobContext of(JobEntity job, JobPayloadStore payloads) {
+        return new JobContext(job.getId(), job.getType(), job.getAttempts(), () -> payloads.open(job), new Output());
+    }
+
+    // A new stream over the payload on every call, the caller closes it
+    public InputStream openPayload() throws IOException {
+        return payloadSource.open();
+    }
+
+    // The whole payload as a string, read again on every call
+    public String payload() {
+        try (InputStream in = openPayload()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Output of this attempt, only kept if the attempt completes, the last call wins
+    public void setResult(String result) {
+        output.result = result;
+    }
+
+    public interface PayloadSource {
+        InputStream open() throws IOException;
+    }
+
+    // Filled by the handler, possibly on another thread than the one reading it (see ExecutionMode)
+    public static final class Output {
+        private volatile String result;
+
+        public String result() {
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.harry.jobworker.handlers;
+
+import java.time.Duration;
+
+// The work behind one job type
+// Every JobHandler bean is registered under its type() by JobHandlerRegistry and the worker
+// dispatches each claimed job to the handler for JobEntity.type
+// Throwing from handle() fails the attempt, the worker then retries with backoff or dead-letters the job
+
+public interface JobHandler {
+
+    String type(); // Job type this handler runs, e.g. "REPORT", must be unique across handlers
+
+    void handle(JobContext context) throws Exception;
+
+    // How long one attempt may run before it is interrupted and counted as failed, null means no limit
+    default Duration timeout() {
+        return null;
+    }
+
+    // Maximum jobs of this type running at once on one worker, 0 means only worker.concurrency applies
+    // worker.type-concurrency overrides this per deployment
+    default int maxConcurrency() {
+        return 0;
+    }
+
+    // BLOCKING handlers run on the job's virtual thread, CPU_BOUND ones on a pool sized to the CPU count
+    default ExecutionMode executionMode() {
+        return ExecutionMode.BLOCKING;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.harry.jobworker.handlers;
+
+import com.harry.jobworker.worker.WorkerProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Looks up the JobHandler for a job type in one map lookup
+// Built once at startup from every JobHandler bean, two handlers for the same type stop the worker from starting
+// Types without a handler go to the simulated handler while worker.simulate-unhandled-types is true (the default,
+// so the README examples with "TEST" jobs keep working), otherwise find() returns null and the job is dead-lettered
+
+@Component
+public class JobHandlerRegistry {
+
+    private final Map<String, JobHandler> handlers = new HashMap<>(); // Job type -> handler
+    private final JobHandler fallback; // Used for types without a handler, null when they should fail
+
+    public JobHandlerRegistry(List<JobHandler> jobHandlers, SimulatedJobHandler simulatedJobHandler, WorkerProperties properties) {
+        for (JobHandler handler : jobHandlers) {
+            JobHandler previous = handlers.putIfAbsent(handler.type(), handler);
+            if (previous != null) {
+                throw new IllegalStateException("Job type " + handler.type() + " has two handlers: "
+                        + previous.getClass().getName() + " and " + handler.getClass().getName());
+            }
+        }
+        this.fallback = properties.isSimulateUnhandledTypes() ? simulatedJobHandler : null;
+    }
+
+    // Handler for this job type, the fallback if none is registered
+    public JobHandler find(String type) {
+        JobHandler handler = handlers.get(type);
+        return handler != null ? handler : fallback;
+    }
+
+    // Every registered handler, used to set up per-type limits and to log what this worker runs
+    public Map<String, JobHandler> all() {
+        return Map.copyOf(handlers);
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.harry.jobworker.handlers;
+
+import com.harry.jobworker.worker.WorkerProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Handler for "DEFAULT" jobs (and for unhandled types, see JobHandlerRegistry)
+// Sleeps for worker.simulated-work and can be told to fail through its payload:
+//   FAIL_ALWAYS    - every attempt fails, the job ends in the DLQ
+//   FAIL_TIMES=n   - the first n attempts fail, then it completes
+// Only this handler looks at those markers, real handlers never pay for checking them
+
+@Component
+public class SimulatedJobHandler implements JobHandler {
+
+    private static final String FAIL_ALWAYS = "FAIL_ALWAYS";
+    private static final String FAIL_TIMES = "FAIL_TIMES=";
+    private static final int MARKER_BYTES = 32; // Only the start of the payload is read, the markers are all that matters here
+
+    private final WorkerProperties properties;
+
+    public SimulatedJobHandler(WorkerProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public String type() {
+        return "DEFAULT";
+    }
+
+    @Override
+    public void handle(JobContext context) throws Exception {
+        String payload;
+        try (InputStream in = context.openPayload()) {
+            payload = new String(in.readNBytes(MARKER_BYTES), StandardCharsets.UTF_8);
+        }
+        if (payload != null && payload.startsWith(FAIL_ALWAYS)) {
+            throw new RuntimeException("Simulated job failure for job " + context.jobId());
+        }
+
+        if (payload != null && payload.startsWith(FAIL_TIMES)) {
+            int n = Integer.parseInt(payload.substring(FAIL_TIMES.length()).trim());
+            if (context.attempts() < n) {
+                throw new RuntimeException("Simulated job attempt for job " + context.jobId() + ", attempt " + (context.attempts() + 1));
+            }
+        }
+
+        Thread.sleep(properties.getSimulatedWork().toMillis()); // Simulate job processing (doing work) time (1.5 seconds by default)
+        context.setResult("Simulated job " + context.jobId() + " completed on attempt " + (context.attempts() + 1)); // Served by GET /jobs/{id}/result
+    }
+
+}
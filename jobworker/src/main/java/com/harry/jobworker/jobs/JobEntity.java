@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 // Represents a job entity in the database
-// Contains fields for job ID, type, payload, status, attempts, and creation timestamp
+// Contains fields for job ID, type, payload, status, attempts, priority, creation timestamp, the time it becomes claimable
+// and the lease held by the worker running it
+// Payloads jobservice stored in job_payloads leave payload NULL, handlers read them through JobPayloadStore
 // Uses JPA annotations for ORM mapping
 
 @Entity
@@ -18,9 +20,12 @@ public class JobEntity {
     @Column(nullable = false)
     private String type;
 
-    @Column(columnDefinition = "text")
+    @Column(columnDefinition = "text", updatable = false)
     private String payload;
 
+    @Column(nullable = false, updatable = false)
+    private boolean payloadExternal; // The payload is in job_payloads, compressed
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private JobStatus status;
@@ -28,14 +33,29 @@ public class JobEntity {
     @Column(nullable = false)
     private int attempts;
 
+    @Enumerated(EnumType.STRING)
+    @Column
+    private JobPriority priority; // Which queue lane the job travels through, null on rows older than priorities means NORMAL
+
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
+    @Column
+    private Instant availableAt; // Earliest time the job may be claimed, set on creation and pushed out on retry
+
+    @Column
+    private String leaseOwner; // worker.id of the worker running the job, set on claim
+
+    @Column
+    private Instant leaseExpiresAt; // Renewed by the owner's heartbeat, once it passes the reaper re-queues the job
+
     public JobEntity(String id, String type, String payload) {
         this.id = id;
         this.type = type;
         this.payload = payload;
+        this.priority = JobPriority.NORMAL;
         this.createdAt = Instant.now();
+        this.availableAt = this.createdAt;
         this.attempts = 0;
         this.status = JobStatus.PENDING;
     }
@@ -54,15 +74,30 @@ public class JobEntity {
     public String getPayload() {
         return payload;
     }
+    public boolean isPayloadExternal() {
+        return payloadExternal;
+    }
     public JobStatus getStatus() {
         return status;
     }
     public int getAttempts() {
         return attempts;
     }
+    public JobPriority getPriority() {
+        return priority == null ? JobPriority.NORMAL : priority;
+    }
     public Instant getCreatedAt() {
         return createdAt;
     }
+    public Instant getAvailableAt() {
+        return availableAt;
+    }
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+    public Instant getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
 
     public void setStatus(JobStatus status) {
         this.status = status;
@@ -70,5 +105,8 @@ public class JobEntity {
     public void incrementAttempts() {
         this.attempts++;
     }
+    public void setAvailableAt(Instant availableAt) {
+        this.availableAt = availableAt;
+    }
 
 }
@@ -0,0 +1,48 @@
+package com.harry.jobworker.jobs;
+
+import com.harry.jobworker.metrics.JobMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.InflaterInputStream;
+
+// Reads job payloads for handlers, the read side of jobservice's JobPayloadStore
+// Short payloads come with the claimed row (jobs.payload), large ones are in job_payloads, deflate compressed,
+// and are only fetched when the handler opens the payload, then decompressed while the handler reads the stream
+
+@Component
+public class JobPayloadStore {
+    private static final String DATA_SQL = "SELECT encoding, data FROM job_payloads WHERE job_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobMetrics metrics;
+
+    public JobPayloadStore(JdbcTemplate jdbcTemplate, JobMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.metrics = metrics;
+    }
+
+    public InputStream open(JobEntity job) throws IOException {
+        if (!job.isPayloadExternal()) {
+            return new ByteArrayInputStream(job.getPayload() == null ? new byte[0] : job.getPayload().getBytes(StandardCharsets.UTF_8));
+        }
+        InputStream payload = metrics.db("payload", () -> jdbcTemplate.query(DATA_SQL, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            if (!"deflate".equals(rs.getString("encoding"))) {
+                throw new IllegalStateException("Unknown payload encoding " + rs.getString("encoding") + " for job " + job.getId());
+            }
+            return new InflaterInputStream(new ByteArrayInputStream(rs.getBytes("data"))); // Only the compressed bytes are held in memory
+        }, job.getId()));
+        if (payload == null) {
+            throw new IOException("Payload of job " + job.getId() + " is missing from job_payloads");
+        }
+        return payload;
+    }
+
+}
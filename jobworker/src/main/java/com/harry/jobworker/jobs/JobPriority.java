@@ -0,0 +1,10 @@
+package com.harry.jobworker.jobs;
+
+// Enum representing how urgently a job should run
+// Declared from most to least urgent, workers serve the lanes in this order
+
+public enum JobPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
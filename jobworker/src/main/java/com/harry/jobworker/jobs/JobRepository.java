@@ -5,32 +5,154 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 //Gives access to database CRUD operations for JobEntity
 //e.g., save(), findById(), findAll(), delete(), etc.
 
 public interface JobRepository extends JpaRepository<JobEntity, String> {
     // Additional repository methods can be added here if needed
 
-    // Atomically claim a job by updating its status from PENDING to IN_PROGRESS
+    // Atomically claim a batch of jobs and load them in the same statement
+    // Only rows that are still PENDING are flipped to IN_PROGRESS and returned,
+    // so IDs another worker already claimed are silently left out
+    // Every claimed row gets a lease: :owner holds it for :leaseMillis unless LeaseKeeper renews it
+    @Transactional
+    @Query(value = """
+        UPDATE jobs
+        SET status = 'IN_PROGRESS', lease_owner = :owner, lease_expires_at = now() + make_interval(secs => :leaseMillis / 1000.0)
+        WHERE id IN (:ids) AND status = 'PENDING'
+        RETURNING *
+        """, nativeQuery = true)
+    List<JobEntity> claimJobs(Collection<String> ids, String owner, long leaseMillis);
+
+    // Like claimJobs, but also takes over IN_PROGRESS jobs whose lease ran out
+    // Used for stream entries reclaimed from a consumer that stopped acknowledging (most likely a dead worker),
+    // a job that is merely slow keeps its renewed lease and is left alone
+    @Transactional
+    @Query(value = """
+        UPDATE jobs
+        SET status = 'IN_PROGRESS', lease_owner = :owner, lease_expires_at = now() + make_interval(secs => :leaseMillis / 1000.0)
+        WHERE id IN (:ids)
+          AND (status = 'PENDING' OR (status = 'IN_PROGRESS' AND (lease_expires_at IS NULL OR lease_expires_at < now())))
+        RETURNING *
+        """, nativeQuery = true)
+    List<JobEntity> reclaimJobs(Collection<String> ids, String owner, long leaseMillis);
+
+    // Postgres queue mode: claim up to :limit ready PENDING jobs of one priority lane straight from the table
+    // SKIP LOCKED lets concurrent workers pass over rows another worker is claiming right now
+    // Served by the partial index jobs_pending_priority_idx (priority, available_at) WHERE status = 'PENDING'
+    @Transactional
+    @Query(value = """
+        UPDATE jobs
+        SET status = 'IN_PROGRESS', lease_owner = :owner, lease_expires_at = now() + make_interval(secs => :leaseMillis / 1000.0)
+        WHERE id IN (
+            SELECT id FROM jobs
+            WHERE status = 'PENDING' AND priority = :priority AND available_at <= now()
+            ORDER BY available_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+        """, nativeQuery = true)
+    List<JobEntity> claimPendingJobs(String priority, int limit, String owner, long leaseMillis);
+
+    // Heartbeat: push out the lease on every job this worker is still running, one statement for all of them
+    // Rows that were reaped (or finished) in the meantime no longer match :owner / IN_PROGRESS and are not counted
+    @Modifying
+    @Transactional
+    @Query(value = """
+        UPDATE jobs
+        SET lease_expires_at = now() + make_interval(secs => :leaseMillis / 1000.0)
+        WHERE id IN (:ids) AND lease_owner = :owner AND status = 'IN_PROGRESS'
+        """, nativeQuery = true)
+    int renewLeases(Collection<String> ids, String owner, long leaseMillis);
+
+    // Reaper: release up to :limit IN_PROGRESS jobs whose lease expired, i.e. their worker died or hung
+    // The lost run counts as an attempt, jobs that used their last one become FAILED instead of PENDING
+    // Served by the partial index jobs_lease_expiry_idx (lease_expires_at) WHERE status = 'IN_PROGRESS',
+    // SKIP LOCKED lets every worker run the reaper without stepping on each other
+    @Transactional
+    @Query(value = """
+        UPDATE jobs
+        SET status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE 'PENDING' END,
+            attempts = attempts + 1,
+            available_at = now(),
+            lease_owner = NULL,
+            lease_expires_at = NULL
+        WHERE id IN (
+            SELECT id FROM jobs
+            WHERE status = 'IN_PROGRESS' AND lease_expires_at < now()
+            ORDER BY lease_expires_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+        """, nativeQuery = true)
+    List<JobEntity> reapExpiredLeases(int maxAttempts, int limit);
+
+    // State transitions out of IN_PROGRESS
+    // Each is one targeted UPDATE guarded by the state the worker claimed: still IN_PROGRESS, still the attempt it ran,
+    // and still leased to this worker. 0 rows means the lease was lost (reaped, then claimed by someone else), the outcome is dropped
+    // Completions go through CompletionBatcher instead, many jobs per statement
+
+    // Put a claimed job back to PENDING without using up an attempt, claimable again from availableAt
+    // Used when the job's type is already running at its worker.type-concurrency limit
     @Modifying
     @Transactional
     @Query("""
-        UPDATE JobEntity j 
-        SET j.status = com.harry.jobworker.jobs.JobStatus.IN_PROGRESS 
-        WHERE j.id = :id and j.status = com.harry.jobworker.jobs.JobStatus.PENDING
+        UPDATE JobEntity j
+        SET j.status = com.harry.jobworker.jobs.JobStatus.PENDING, j.availableAt = :availableAt,
+            j.leaseOwner = null, j.leaseExpiresAt = null
+        WHERE j.id = :id and j.status = com.harry.jobworker.jobs.JobStatus.IN_PROGRESS
+          and j.attempts = :attempts and j.leaseOwner = :owner
+        """)
+    int deferJob(String id, int attempts, String owner, Instant availableAt);
+
+    // Failed attempt with attempts left: back to PENDING with the attempt counted, claimable again from availableAt
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE JobEntity j
+        SET j.status = com.harry.jobworker.jobs.JobStatus.PENDING, j.attempts = j.attempts + 1, j.availableAt = :availableAt,
+            j.leaseOwner = null, j.leaseExpiresAt = null
+        WHERE j.id = :id and j.status = com.harry.jobworker.jobs.JobStatus.IN_PROGRESS
+          and j.attempts = :attempts and j.leaseOwner = :owner
         """)
-    int claimJob(String id);
+    int retryJob(String id, int attempts, String owner, Instant availableAt);
 
-    // Atomically complete a job by updating its status from IN_PROGRESS to COMPLETED
-    // Prevents completing a job that is not in IN_PROGRESS state
+    // Failed attempt with none left (or no handler): FAILED with the attempt counted, the job is in the DLQ
     @Modifying
     @Transactional
     @Query("""
-        UPDATE JobEntity j 
-        SET j.status = com.harry.jobworker.jobs.JobStatus.COMPLETED
+        UPDATE JobEntity j
+        SET j.status = com.harry.jobworker.jobs.JobStatus.FAILED, j.attempts = j.attempts + 1,
+            j.leaseOwner = null, j.leaseExpiresAt = null
         WHERE j.id = :id and j.status = com.harry.jobworker.jobs.JobStatus.IN_PROGRESS
+          and j.attempts = :attempts and j.leaseOwner = :owner
+        """)
+    int failJob(String id, int attempts, String owner);
+
+    // Postgres queue mode depth gauges: [priority, ready, scheduled] per priority lane
+    @Query(value = """
+        SELECT priority,
+               count(*) FILTER (WHERE available_at <= now()) AS ready,
+               count(*) FILTER (WHERE available_at > now()) AS scheduled
+        FROM jobs
+        WHERE status = 'PENDING'
+        GROUP BY priority
+        """, nativeQuery = true)
+    List<Object[]> countPendingByPriority();
+
+    // Earliest availableAt among PENDING jobs, null if there are none
+    @Query("""
+        SELECT min(j.availableAt) FROM JobEntity j
+        WHERE j.status = com.harry.jobworker.jobs.JobStatus.PENDING
         """)
-    int completeJob(String id);
+    Instant findNextAvailableAt();
+
     
     
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.harry.jobworker.metrics;
+
+import com.harry.jobworker.jobs.JobEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Micrometer meters for the job lifecycle, exposed on /actuator/prometheus
+//   jobs.queue.wait  (timer, priority)       - from availableAt (enqueue, retry or run time) to claim
+//   jobs.claim       (timer, backend)        - the pop + claim round trips for one batch, excluding blocking waits
+//   jobs.execution   (timer, type, outcome)  - running the job itself
+//   jobs.db          (timer, operation)      - single Postgres statements
+//   jobs.redis       (timer, operation)      - single non-blocking Redis calls
+//   jobs.retry.promotion (timer)             - one RetryPromoter run over every lane and shard
+//   jobs.processed   (counter, type, outcome) - completed, retried, dead_lettered or deferred
+//   jobs.queue.stolen (counter)               - job IDs a consumer took from another shard than its home shard
+//   jobs.attempts.dropped (counter)           - attempt history rows dropped because AttemptRecorder's queue was full
+//   jobs.consumer.backoff (timer, reason)    - pauses consumers took because the stores were slow (latency) or a claim failed (error)
+// Latency timers publish histogram buckets so p99 can be computed across workers in Prometheus
+// Claim, execution, Postgres and Redis latencies are also kept as moving averages, ConsumptionController paces claims with them
+
+@Component
+public class JobMetrics {
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>(); // Meter lookups are cached, these are called per job
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final MovingAverage claimLatency = new MovingAverage();
+    private final MovingAverage executionLatency = new MovingAverage();
+    private final MovingAverage dbLatency = new MovingAverage(); // Failed calls included, a timeout is exactly what it should notice
+    private final MovingAverage redisLatency = new MovingAverage();
+
+    public JobMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Time the job spent claimable before a worker claimed it
+    public void queueWait(JobEntity job) {
+        if (job.getAvailableAt() == null) {
+            return;
+        }
+        Duration wait = Duration.between(job.getAvailableAt(), Instant.now());
+        timer("jobs.queue.wait", "priority", job.getPriority().name().toLowerCase())
+                .record(wait.isNegative() ? Duration.ZERO : wait);
+    }
+
+    public void claim(String backend, long startNanos) {
+        record(timer("jobs.claim", "backend", backend), claimLatency, startNanos);
+    }
+
+    public void promotion(long startNanos) {
+        timer("jobs.retry.promotion").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Execution time and outcome of one attempt
+    public void executed(JobEntity job, long startNanos, String outcome) {
+        record(timer("jobs.execution", "type", job.getType(), "outcome", outcome), executionLatency, startNanos);
+        processed(job, outcome);
+    }
+
+    public void processed(JobEntity job, String outcome) {
+        counters.computeIfAbsent("jobs.processed|" + job.getType() + "|" + outcome, key -> Counter.builder("jobs.processed")
+                .description("Jobs by outcome")
+                .tag("type", job.getType())
+                .tag("outcome", outcome)
+                .register(registry))
+                .increment();
+    }
+
+    // Job IDs a consumer took from a shard other than its home shard
+    public void stolen(int count) {
+        counters.computeIfAbsent("jobs.queue.stolen", key -> Counter.builder("jobs.queue.stolen")
+                .description("Job IDs taken from another consumer's home shard")
+                .register(registry))
+                .increment(count);
+    }
+
+    public void attemptDropped() {
+        counters.computeIfAbsent("jobs.attempts.dropped", key -> Counter.builder("jobs.attempts.dropped")
+                .description("Attempt history rows that could not be queued for writing")
+                .register(registry))
+                .increment();
+    }
+
+    // A pause a consumer took before claiming again
+    public void backoff(String reason, Duration pause) {
+        timer("jobs.consumer.backoff", "reason", reason).record(pause);
+    }
+
+    public <T> T db(String operation, Supplier<T> call) {
+        return timed(timer("jobs.db", "operation", operation), dbLatency, call);
+    }
+
+    public void db(String operation, Runnable call) {
+        timed(timer("jobs.db", "operation", operation), dbLatency, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public <T> T redis(String operation, Supplier<T> call) {
+        return timed(timer("jobs.redis", "operation", operation), redisLatency, call);
+    }
+
+    public void redis(String operation, Runnable call) {
+        timed(timer("jobs.redis", "operation", operation), redisLatency, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    // Moving averages in nanoseconds, -1 until the first sample
+    public double claimLatency() {
+        return claimLatency.get();
+    }
+    public double executionLatency() {
+        return executionLatency.get();
+    }
+    public double dbLatency() {
+        return dbLatency.get();
+    }
+    public double redisLatency() {
+        return redisLatency.get();
+    }
+
+    private static <T> T timed(Timer timer, MovingAverage average, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            record(timer, average, start);
+        }
+    }
+
+    private static void record(Timer timer, MovingAverage average, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        average.record(nanos);
+    }
+
+    // Tags come in name, value pairs
+    private Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(name + "|" + String.join("|", tags), key -> Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+}
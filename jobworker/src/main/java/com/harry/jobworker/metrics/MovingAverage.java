@@ -0,0 +1,26 @@
+package com.harry.jobworker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Exponentially weighted moving average of a latency in nanoseconds, updated lock-free from any thread
+// Each sample moves the average WEIGHT of the way towards it, so it follows the last dozen or so samples
+
+public class MovingAverage {
+    private static final double WEIGHT = 0.2;
+    private static final long EMPTY = Double.doubleToLongBits(-1);
+
+    private final AtomicLong bits = new AtomicLong(EMPTY); // The average as double bits, -1 until the first sample
+
+    public void record(long nanos) {
+        bits.updateAndGet(current -> {
+            double average = Double.longBitsToDouble(current);
+            return Double.doubleToLongBits(average < 0 ? nanos : average + WEIGHT * (nanos - average));
+        });
+    }
+
+    // Average in nanoseconds, -1 if nothing was recorded yet
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+}
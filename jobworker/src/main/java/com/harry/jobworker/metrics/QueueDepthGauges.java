@@ -0,0 +1,62 @@
+package com.harry.jobworker.metrics;
+
+import com.harry.jobworker.queue.JobQueue;
+import com.harry.jobworker.queue.QueueDepth;
+import com.harry.jobworker.worker.WorkerProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// jobs.queue.depth (gauge, kind, lane) - ready, scheduled, unacked and dead-lettered job IDs, see QueueDepth
+// Depths are polled every worker.metrics-depth-interval and cached,
+// so a Prometheus scrape never waits on Redis or Postgres and a slow store can't stall the scrape
+
+@Component
+public class QueueDepthGauges {
+    private final JobQueue jobQueue;
+    private final MeterRegistry registry;
+    private final TaskScheduler taskScheduler;
+    private final WorkerProperties properties;
+
+    private final Map<String, AtomicLong> depths = new ConcurrentHashMap<>(); // kind|lane -> last polled depth, one gauge each
+
+    public QueueDepthGauges(JobQueue jobQueue, MeterRegistry registry, TaskScheduler taskScheduler, WorkerProperties properties) {
+        this.jobQueue = jobQueue;
+        this.registry = registry;
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::refresh, properties.getMetricsDepthInterval());
+    }
+
+    public void refresh() {
+        try {
+            for (QueueDepth depth : jobQueue.depths()) {
+                depths.computeIfAbsent(depth.kind() + "|" + depth.lane(), key -> register(depth)).set(depth.depth());
+            }
+        } catch (Exception e) {
+            System.out.println("Queue depth poll error: " + e.getMessage()); // Gauges keep their last value
+        }
+    }
+
+    private AtomicLong register(QueueDepth depth) {
+        AtomicLong value = new AtomicLong();
+        Gauge.builder("jobs.queue.depth", value, AtomicLong::get)
+                .description("Job IDs waiting in the queue")
+                .tag("kind", depth.kind())
+                .tag("lane", depth.lane())
+                .register(registry);
+        return value;
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.worker.WorkerProperties;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Retry and dead-letter handling shared by the Redis backends
+//   retry:jobs      (ZSET) job IDs scored by the time they may be retried, one per priority lane (see QueueKeys)
+//   deadletter:jobs (LIST) job IDs that ran out of attempts, shared by all lanes and shards (it is only written when a job gives up)
+// Subclasses supply the script statement that puts due retries back onto their queue
+// With worker.queue-shards above 1 every lane is split into shards (see QueueKeys) and each consumer thread gets a home shard,
+// spread over the shards by worker.id so workers start on different ones. A consumer reads its home shard first,
+// steals from the other shards in turn when it is empty, and only blocks on its home shard
+// A job's retries go to the retry ZSET of its own shard, so they are promoted back into that shard's queue
+
+public abstract class AbstractRedisJobQueue implements JobQueue {
+    protected static final JobPriority[] LANES = JobPriority.values(); // Most to least urgent
+    protected static final String DEAD_LETTER_KEY = "deadletter:jobs"; // Key for the Redis dead letter queue
+
+    protected final StringRedisTemplate redisTemplate;
+    protected final WorkerProperties properties;
+    protected final LaneScheduler laneScheduler; // Splits each claim batch across the priority lanes
+    protected final JobMetrics metrics;
+    protected final int shards; // worker.queue-shards
+
+    private final AtomicInteger nextHomeShard; // Hands out home shards to consumer threads, starting at a worker.id dependent shard
+    private final ThreadLocal<Integer> homeShard;
+
+    protected AbstractRedisJobQueue(StringRedisTemplate redisTemplate, WorkerProperties properties, JobMetrics metrics) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.laneScheduler = new LaneScheduler(properties.getPriorityWeights());
+        this.metrics = metrics;
+        this.shards = Math.max(1, properties.getQueueShards());
+        this.nextHomeShard = new AtomicInteger(properties.getId().hashCode());
+        this.homeShard = ThreadLocal.withInitial(() -> Math.floorMod(nextHomeShard.getAndIncrement(), shards));
+    }
+
+    // Script that moves due retries into this backend's queue, see promotionScript
+    protected abstract RedisScript<List> promotionScript();
+
+    // Key of the lane's queue in one shard, due retries are moved into it
+    protected abstract String queueKey(JobPriority lane, int shard);
+
+    // Ready (and, for streams, unacknowledged) depth of one lane's queue in one shard
+    protected abstract List<QueueDepth> queueDepths(JobPriority lane, int shard);
+
+    // Adds one job ID to a lane's queue in one shard, called inside a pipeline
+    protected abstract void push(RedisConnection connection, String queueKey, String jobId);
+
+    // Reads up to count items from one lane of one shard without blocking
+    protected interface ShardReader<T> {
+        List<T> read(JobPriority lane, int shard, int count);
+    }
+
+    // Hash tag of a shard for QueueKeys
+    protected String shard(int shard) {
+        return QueueKeys.shard(shard, shards);
+    }
+
+    // Shard the calling consumer thread reads first and blocks on
+    protected int homeShard() {
+        return homeShard.get();
+    }
+
+    // Fill a batch from the home shard, or if that is empty from the first other shard that has work
+    protected <T> List<T> fillFromShards(int maxJobs, ShardReader<T> reader) {
+        int home = homeShard();
+        List<T> items = laneScheduler.fill(maxJobs, (lane, count) -> reader.read(lane, home, count));
+        for (int i = 1; items.isEmpty() && maxJobs > 0 && i < shards; i++) {
+            int victim = (home + i) % shards;
+            items = laneScheduler.fill(maxJobs, (lane, count) -> reader.read(lane, victim, count));
+            if (!items.isEmpty()) {
+                metrics.stolen(items.size());
+            }
+        }
+        return items;
+    }
+
+    // How long to block on the home shard, never longer than worker.steal-interval when there are other shards to look at
+    protected Duration blockingWait(Duration timeout) {
+        Duration stealInterval = properties.getStealInterval();
+        return shards > 1 && stealInterval.compareTo(timeout) < 0 ? stealInterval : timeout;
+    }
+
+    // Builds the promotion script around the backend specific statement that pushes the table "chunk"
+    // The due entries are handled 1000 at a time, unpack() of a larger table overflows the Lua stack (about 8000 values)
+    // and would fail the whole call when worker.retry-promotion-batch-size is set high
+    //   KEYS[1] retry ZSET, KEYS[2] queue
+    //   ARGV[1] now (epoch millis), ARGV[2] max entries to move
+    // Returns { moved, score of the next waiting retry or -1 }
+    // Runs atomically on the Redis server, so two workers can never promote the same entry
+    protected static RedisScript<List> promotionScript(String pushDue) {
+        return new DefaultRedisScript<>("""
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            for i = 1, #due, 1000 do
+                local chunk = { unpack(due, i, math.min(i + 999, #due)) }
+                redis.call('ZREM', KEYS[1], unpack(chunk))
+            """ + pushDue + """
+            end
+            local nextDue = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+            if nextDue[2] then
+                return { #due, tonumber(nextDue[2]) }
+            end
+            return { #due, -1 }
+            """, List.class);
+    }
+
+    @Override
+    public void scheduleRetry(JobEntity job, long retryAtMillis) {
+        metrics.redis("zadd", () -> redisTemplate.opsForZSet().add(QueueKeys.retry(job.getPriority(), shard(QueueKeys.shardOf(job.getId(), shards))),
+                job.getId(), retryAtMillis)); // Add job ID to its lane's retry sorted set in its shard with the retry time as the score
+    }
+
+    // One pipeline for all the IDs, each goes onto the queue of its own shard
+    @Override
+    public void enqueue(JobPriority lane, List<String> jobIds) {
+        metrics.redis("enqueue", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String jobId : jobIds) {
+                push(connection, queueKey(lane, QueueKeys.shardOf(jobId, shards)), jobId);
+            }
+            return null; // Pipelined callbacks must return null
+        }));
+    }
+
+    @Override
+    public void deadLetter(JobEntity job) {
+        metrics.redis("rpush", () -> redisTemplate.opsForList().rightPush(DEAD_LETTER_KEY, job.getId())); // Push failed job ID into the DLQ
+    }
+
+    // Move every due retry back to its lane's job queue, in every shard
+    // Returns the earliest next due time over all lanes and shards
+    @Override
+    public long promoteDueRetries() {
+        long now = System.currentTimeMillis(); // Current time in milliseconds
+
+        long nextDueAt = -1;
+        for (int shard = 0; shard < shards; shard++) {
+            for (JobPriority lane : LANES) {
+                long laneNextDueAt = promoteDueRetries(lane, shard, now);
+                if (laneNextDueAt >= 0 && (nextDueAt < 0 || laneNextDueAt < nextDueAt)) {
+                    nextDueAt = laneNextDueAt;
+                }
+            }
+        }
+        return nextDueAt;
+    }
+
+    // Each script call moves up to worker.retry-promotion-batch-size entries, calls repeat until nothing due is left
+    // Both keys carry the shard's hash tag, so the script stays on one cluster node
+    private long promoteDueRetries(JobPriority lane, int shard, long now) {
+        int batchSize = properties.getRetryPromotionBatchSize();
+
+        long promoted = 0;
+        while (true) {
+            List<?> result = metrics.redis("promote", () -> redisTemplate.execute(promotionScript(), List.of(QueueKeys.retry(lane, shard(shard)), queueKey(lane, shard)),
+                    String.valueOf(now), String.valueOf(batchSize)));
+            if (result == null || result.size() < 2) {
+                return -1;
+            }
+
+            long moved = Long.parseLong(result.get(0).toString());
+            long nextDueAt = Long.parseLong(result.get(1).toString());
+            promoted += moved;
+
+            if (moved < batchSize || nextDueAt < 0 || nextDueAt > now) { // Nothing due is left
+                if (promoted > 0) {
+                    System.out.println("Promoted " + promoted + " jobs back to " + queueKey(lane, shard) + " for retry.");
+                }
+                return nextDueAt;
+            }
+        }
+    }
+
+    // Depths are summed over the shards, the gauges stay one per kind and lane
+    // A depth Redis can't tell (-1, see RedisStreamJobQueue) makes the sum -1 too
+    @Override
+    public List<QueueDepth> depths() {
+        Map<String, QueueDepth> byKindAndLane = new LinkedHashMap<>();
+        for (JobPriority lane : LANES) {
+            for (int shard = 0; shard < shards; shard++) {
+                List<QueueDepth> shardDepths = new ArrayList<>(queueDepths(lane, shard));
+                shardDepths.add(new QueueDepth("scheduled", laneName(lane), size(redisTemplate.opsForZSet().zCard(QueueKeys.retry(lane, shard(shard))))));
+                for (QueueDepth depth : shardDepths) {
+                    byKindAndLane.merge(depth.kind() + "|" + depth.lane(), depth, (a, b) -> new QueueDepth(a.kind(), a.lane(),
+                            a.depth() < 0 || b.depth() < 0 ? -1 : a.depth() + b.depth()));
+                }
+            }
+        }
+        List<QueueDepth> depths = new ArrayList<>(byKindAndLane.values());
+        depths.add(new QueueDepth("deadletter", "all", size(redisTemplate.opsForList().size(DEAD_LETTER_KEY))));
+        return depths;
+    }
+
+    protected static String laneName(JobPriority lane) {
+        return lane.name().toLowerCase();
+    }
+
+    protected static long size(Long size) {
+        return size == null ? 0 : size;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+
+import java.time.Duration;
+import java.util.List;
+
+// Where the worker gets its jobs from and where failed jobs go
+// One implementation is active, picked with worker.queue-backend:
+//   redis    - RedisListJobQueue, job IDs travel through queue:jobs / retry:jobs (default)
+//   stream   - RedisStreamJobQueue, job IDs travel through the stream:jobs consumer group
+//   postgres - PostgresJobQueue, jobs are claimed straight from the jobs table
+
+public interface JobQueue {
+
+    // Wait up to timeout for work and claim at most maxJobs of it
+    // Every returned job is already IN_PROGRESS in the database, the list is empty if nothing arrived in time
+    List<JobEntity> claimBatch(int maxJobs, Duration timeout) throws InterruptedException;
+
+    // Make a failed job claimable again at retryAtMillis (epoch millis)
+    // Called before the guarded UPDATE that sets the row PENDING with availableAt at the same time, if that UPDATE
+    // finds the lease lost the entry points at a job that is not PENDING and the claim skips it
+    void scheduleRetry(JobEntity job, long retryAtMillis);
+
+    // Record a job that ran out of attempts, called only after the guarded UPDATE saved the row as FAILED
+    void deadLetter(JobEntity job);
+
+    // Called once the job's outcome for this attempt is stored (completed, retry scheduled or dead-lettered)
+    // Backends that track delivery, like the stream consumer group, release the message here
+    default void acknowledge(JobEntity job) {
+    }
+
+    // Queue jobs that became PENDING on the worker side, the job graph children CompletionBatcher released
+    // The rows are already PENDING and due, a job queued twice is skipped by the claim
+    void enqueue(JobPriority lane, List<String> jobIds);
+
+    // Move retries that are due back into the queue
+    // Returns when the next waiting retry comes due (epoch millis), or -1 if none is waiting
+    // Called by RetryPromoter, which uses the return value to decide when to run next
+    long promoteDueRetries();
+
+    // Current size of every part of this backend's queue, polled for the jobs.queue.depth gauges
+    List<QueueDepth> depths();
+
+}
@@ -0,0 +1,96 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.worker.WorkerProperties;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Write-through side of jobservice's job status cache, and the source of its job events
+//   job:status:<id> (HASH) id, type, status, attempts, priority, createdAt, availableAt - expires after worker.status-cache-ttl
+//   jobs:events (pub/sub)  the same projection, published on every change for /jobs/{id}/await and /jobs/{id}/events
+// The worker writes the whole projection after every status change it stores in Postgres,
+// so GET /jobs/{id} polls are answered from Redis and never compete with claims and completions
+// One pipelined HSET + PEXPIRE + PUBLISH per job, a failed write is only logged, the TTL bounds how long the old status can be served
+// Job graph children released by another job's completion are evicted instead, the next poll loads them from Postgres
+
+@Component
+public class JobStatusCache {
+    private final StringRedisTemplate redisTemplate;
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
+
+    public JobStatusCache(StringRedisTemplate redisTemplate, WorkerProperties properties, JobMetrics metrics) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    public void write(JobEntity job) {
+        writeAll(List.of(job));
+    }
+
+    public void writeAll(Collection<JobEntity> jobs) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        long ttlMillis = properties.getStatusCacheTtl().toMillis(); // 0 turns the hash write-through off, events are still published
+        try {
+            metrics.redis("status_cache", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (JobEntity job : jobs) {
+                    if (ttlMillis > 0) {
+                        String key = QueueKeys.jobStatus(job.getId());
+                        redis.hMSet(key, projection(job));
+                        redis.pExpire(key, ttlMillis);
+                    }
+                    redis.publish(QueueKeys.EVENTS_CHANNEL, event(job)); // After the hash, a subscriber that reads it sees this status
+                }
+                return null;
+            }));
+        } catch (Exception e) {
+            System.out.println("Job status cache write error: " + e.getMessage());
+        }
+    }
+
+    public void evictAll(Collection<String> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        try {
+            metrics.redis("status_cache", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String jobId : jobIds) {
+                    redis.del(QueueKeys.jobStatus(jobId)); // One key per DEL, the keys live in different cluster slots
+                }
+                return null;
+            }));
+        } catch (Exception e) {
+            System.out.println("Job status cache evict error: " + e.getMessage());
+        }
+    }
+
+    // Type goes last, it is the only field that may contain the separator
+    private static String event(JobEntity job) {
+        return job.getId() + "|" + job.getStatus().name() + "|" + job.getAttempts() + "|" + job.getPriority().name()
+                + "|" + job.getCreatedAt() + "|" + job.getAvailableAt() + "|" + job.getType();
+    }
+
+    private static Map<String, String> projection(JobEntity job) {
+        return Map.of(
+                "id", job.getId(),
+                "type", job.getType(),
+                "status", job.getStatus().name(),
+                "attempts", String.valueOf(job.getAttempts()),
+                "priority", job.getPriority().name(),
+                "createdAt", String.valueOf(job.getCreatedAt()),
+                "availableAt", String.valueOf(job.getAvailableAt()));
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobPriority;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+// Splits each claim batch across the priority lanes with deficit round-robin
+// Every batch of n slots adds weight * n credit to each lane, a lane may take one job per totalWeight credit
+// (credit is kept in these integer units so shares come out exact, e.g. 8/3/1 of every 12 jobs)
+// Lanes with the most credit are served first, so with weights 8/3/1 a full LOW lane still gets one job in twelve
+// A lane that runs dry loses its leftover credit (it can't bank credit while idle)
+// Slots nobody had credit for go to lanes in priority order so the worker never idles while any lane has work,
+// they are charged too, but a lane's debt is capped at one batch so using idle capacity is never punished for long
+// Shared by all consumer threads of one queue backend
+
+class LaneScheduler {
+    private static final JobPriority[] LANES = JobPriority.values(); // Most to least urgent
+
+    private final Map<JobPriority, Integer> weights = new EnumMap<>(JobPriority.class);
+    private final Map<JobPriority, Long> deficits = new EnumMap<>(JobPriority.class);
+    private final int totalWeight;
+
+    LaneScheduler(Map<JobPriority, Integer> configuredWeights) {
+        int total = 0;
+        for (JobPriority lane : LANES) {
+            int weight = Math.max(1, configuredWeights.getOrDefault(lane, 1)); // Every lane keeps some share so nothing starves forever
+            weights.put(lane, weight);
+            deficits.put(lane, 0L);
+            total += weight;
+        }
+        this.totalWeight = total;
+    }
+
+    // Take up to maxJobs items, asking take(lane, n) for at most n items from each lane
+    // take must not block, the caller does its own blocking wait when this returns nothing
+    <T> List<T> fill(int maxJobs, BiFunction<JobPriority, Integer, List<T>> take) {
+        List<T> taken = new ArrayList<>(maxJobs);
+        if (maxJobs <= 0) {
+            return taken;
+        }
+
+        for (Map.Entry<JobPriority, Integer> quota : plan(maxJobs).entrySet()) {
+            List<T> fromLane = take.apply(quota.getKey(), quota.getValue());
+            taken.addAll(fromLane);
+            charge(quota.getKey(), quota.getValue(), fromLane.size());
+        }
+
+        // Spare slots, either the batch was too small to give every lane a whole job or some lanes ran dry
+        for (JobPriority lane : LANES) {
+            int remaining = maxJobs - taken.size();
+            if (remaining == 0) {
+                break;
+            }
+            List<T> fromLane = take.apply(lane, remaining);
+            taken.addAll(fromLane);
+            chargeSpare(lane, fromLane.size(), maxJobs);
+        }
+        return taken;
+    }
+
+    // Credit every lane for a batch of maxJobs slots and decide how many each lane may take
+    // Lanes come back ordered by credit, the total never exceeds maxJobs
+    synchronized Map<JobPriority, Integer> plan(int maxJobs) {
+        for (JobPriority lane : LANES) {
+            deficits.merge(lane, (long) weights.get(lane) * maxJobs, Long::sum);
+        }
+
+        List<JobPriority> byCredit = new ArrayList<>(List.of(LANES));
+        byCredit.sort(Comparator.comparingLong((JobPriority lane) -> deficits.get(lane)).reversed()); // Stable, ties stay in priority order
+
+        Map<JobPriority, Integer> quotas = new LinkedHashMap<>();
+        int assigned = 0;
+        for (JobPriority lane : byCredit) {
+            int quota = (int) Math.min(Math.max(0, deficits.get(lane) / totalWeight), maxJobs - assigned);
+            if (quota > 0) {
+                quotas.put(lane, quota);
+                assigned += quota;
+            }
+        }
+        return quotas;
+    }
+
+    // Spend the credit a lane used, a lane that returned less than its quota is empty and starts over from zero
+    synchronized void charge(JobPriority lane, int quota, int taken) {
+        if (taken < quota) {
+            deficits.put(lane, 0L);
+        } else {
+            deficits.merge(lane, -(long) taken * totalWeight, Long::sum);
+        }
+    }
+
+    // Spare slots cost credit like any other, down to at most one batch of debt
+    synchronized void chargeSpare(JobPriority lane, int taken, int maxJobs) {
+        long floor = -(long) maxJobs * totalWeight;
+        deficits.put(lane, Math.max(floor, deficits.get(lane) - (long) taken * totalWeight));
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.harry.jobworker.queue;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Holds one Postgres connection that LISTENs on the jobs_pending channel
+// jobservice sends NOTIFY jobs_pending when it commits new or requeued jobs,
+// so idle consumers wake up right away instead of polling the jobs table
+// A single listener thread owns the connection, consumers only wait on a condition
+
+@Component
+@ConditionalOnProperty(name = "worker.queue-backend", havingValue = "postgres")
+public class PendingJobListener {
+    static final String CHANNEL = "jobs_pending";
+
+    private final DataSource dataSource;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notified = lock.newCondition();
+    private long generation = 0; // Bumped on every notification, guarded by lock
+    private volatile boolean running = true;
+    private final Thread listenerThread;
+
+    public PendingJobListener(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.listenerThread = Thread.ofPlatform().name("pending-job-listener").daemon().start(this::listen);
+    }
+
+    // Wait until a notification arrives or the timeout passes
+    public void await(Duration timeout) throws InterruptedException {
+        lock.lock();
+        try {
+            long seen = generation;
+            long nanos = timeout.toNanos();
+            while (generation == seen && nanos > 0) {
+                nanos = notified.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true); // LISTEN only takes effect once committed
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000); // Blocks up to 1s
+                    if (notifications != null && notifications.length > 0) {
+                        wakeAll();
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                System.out.println("Pending job listener error: " + e.getMessage());
+                wakeAll(); // Consumers fall back to checking the table while we reconnect
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void wakeAll() {
+        lock.lock();
+        try {
+            generation++;
+            notified.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        listenerThread.join(2000);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.worker.WorkerProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Postgres-only queue, the jobs table itself is the queue
+// Claims PENDING rows whose availableAt has passed with SELECT ... FOR UPDATE SKIP LOCKED,
+// so concurrent workers never block on or double-claim the same row
+// Each priority lane is claimed with its own statement, LaneScheduler decides how many rows each lane gets
+// Retries need nothing extra, the failed row is saved as PENDING with availableAt pushed out
+// Dead-lettered IDs still go to the deadletter:jobs list so the DLQ endpoints keep working
+
+@Component
+@ConditionalOnProperty(name = "worker.queue-backend", havingValue = "postgres")
+public class PostgresJobQueue implements JobQueue {
+    private static final String DEAD_LETTER_KEY = "deadletter:jobs"; // Key for the Redis dead letter queue
+
+    private final JobRepository jobRepository;
+    private final PendingJobListener pendingJobListener;
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate; // Sends NOTIFY when released jobs are ready
+    private final LaneScheduler laneScheduler; // Splits each claim batch across the priority lanes
+    private final WorkerProperties properties; // Worker id and lease duration written on claim
+    private final JobMetrics metrics;
+
+    public PostgresJobQueue(JobRepository jobRepository, PendingJobListener pendingJobListener, StringRedisTemplate redisTemplate,
+                            JdbcTemplate jdbcTemplate, WorkerProperties properties, JobMetrics metrics) {
+        this.jobRepository = jobRepository;
+        this.pendingJobListener = pendingJobListener;
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.laneScheduler = new LaneScheduler(properties.getPriorityWeights());
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    // Claim what is ready, otherwise sleep until NOTIFY, the next retry comes due, or the timeout passes
+    @Override
+    public List<JobEntity> claimBatch(int maxJobs, Duration timeout) throws InterruptedException {
+        List<JobEntity> claimedJobs = claimReady(maxJobs);
+        if (!claimedJobs.isEmpty()) {
+            return claimedJobs;
+        }
+
+        Duration wait = timeout;
+        Instant nextAvailableAt = jobRepository.findNextAvailableAt(); // Earliest PENDING row, e.g. a retry in backoff
+        if (nextAvailableAt != null) {
+            Duration untilDue = Duration.between(Instant.now(), nextAvailableAt);
+            if (untilDue.compareTo(wait) < 0) {
+                wait = untilDue;
+            }
+        }
+        // That row can be due already and still not claimable (locked by another claimer, or in a lane this batch skipped),
+        // without a floor the consumer would spin on Postgres until it is gone
+        if (wait.compareTo(properties.getMinPollWait()) < 0) {
+            wait = properties.getMinPollWait();
+        }
+
+        pendingJobListener.await(wait);
+        return claimReady(maxJobs);
+    }
+
+    private List<JobEntity> claimReady(int maxJobs) {
+        long start = System.nanoTime();
+        List<JobEntity> claimedJobs = laneScheduler.fill(maxJobs,
+                (lane, count) -> metrics.db("claim", () -> jobRepository.claimPendingJobs(lane.name(), count,
+                        properties.getId(), properties.getLeaseDuration().toMillis())));
+        if (!claimedJobs.isEmpty()) {
+            metrics.claim("postgres", start);
+        }
+        return claimedJobs;
+    }
+
+    @Override
+    public void scheduleRetry(JobEntity job, long retryAtMillis) {
+        // Nothing to do, availableAt on the PENDING row is the schedule
+    }
+
+    @Override
+    public void deadLetter(JobEntity job) {
+        metrics.redis("rpush", () -> redisTemplate.opsForList().rightPush(DEAD_LETTER_KEY, job.getId())); // Push failed job ID into the DLQ
+    }
+
+    // The rows are the queue, idle workers only need waking up
+    @Override
+    public void enqueue(JobPriority lane, List<String> jobIds) {
+        metrics.db("notify", () -> jdbcTemplate.execute("NOTIFY " + PendingJobListener.CHANNEL));
+    }
+
+    @Override
+    public long promoteDueRetries() {
+        return -1; // Due retries are claimable as soon as availableAt passes, nothing to promote
+    }
+
+    // Ready and scheduled PENDING rows per lane, counted in one pass over the pending partial index
+    @Override
+    public List<QueueDepth> depths() {
+        List<QueueDepth> depths = new ArrayList<>();
+        for (Object[] row : jobRepository.countPendingByPriority()) {
+            String lane = row[0] == null ? "normal" : row[0].toString().toLowerCase();
+            depths.add(new QueueDepth("ready", lane, ((Number) row[1]).longValue()));
+            depths.add(new QueueDepth("scheduled", lane, ((Number) row[2]).longValue()));
+        }
+        Long deadLettered = redisTemplate.opsForList().size(DEAD_LETTER_KEY);
+        depths.add(new QueueDepth("deadletter", "all", deadLettered == null ? 0 : deadLettered));
+        return depths;
+    }
+
+}
@@ -0,0 +1,8 @@
+package com.harry.jobworker.queue;
+
+// How many job IDs sit in one part of the queue, reported as the jobs.queue.depth gauge
+//   kind - "ready" (waiting to be claimed), "scheduled" (retries and scheduled jobs not due yet),
+//          "unacked" (stream entries read but not acknowledged) or "deadletter"
+//   lane - "high", "normal", "low", or "all" for the shared DLQ
+
+public record QueueDepth(String kind, String lane, long depth) {}
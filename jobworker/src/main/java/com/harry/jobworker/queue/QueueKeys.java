@@ -0,0 +1,68 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobPriority;
+
+// Redis key names per priority lane, shared with jobservice (it has the same class)
+// NORMAL keeps the original key names so queues written before priorities existed are still consumed
+//   HIGH   -> queue:jobs:high, stream:jobs:high, retry:jobs:high
+//   NORMAL -> queue:jobs,      stream:jobs,      retry:jobs
+//   LOW    -> queue:jobs:low,  stream:jobs:low,  retry:jobs:low
+// With worker.queue-shards above 1 every lane is split into shards, job IDs are spread over them by hash
+// and each key gets the shard as a hash tag: queue:jobs:high{0}, queue:jobs:high{1}, retry:jobs{1}, ...
+// In Redis Cluster one shard's queue, stream and retry keys share a slot (the promotion script and the
+// multi-lane BLPOP use several at once) while different shards land on different nodes
+// job:status:<id> (HASH) caches the status projection jobservice serves on GET /jobs/{id}, see JobStatusCache
+// throttle:rate:{<type>} (HASH) and throttle:running:{<type>} (ZSET) hold the cluster-wide per-type limits, see TypeThrottle,
+// the type is their hash tag so the acquire script can use both in one slot
+
+public final class QueueKeys {
+    public static final String EVENTS_CHANNEL = "jobs:events"; // Pub/sub channel for job status changes: id|status|attempts|priority|createdAt|availableAt|type
+    private static final String QUEUE_PREFIX = "queue:jobs";
+    private static final String STREAM_PREFIX = "stream:jobs";
+    private static final String RETRY_PREFIX = "retry:jobs";
+    private static final String STATUS_PREFIX = "job:status:";
+    private static final String THROTTLE_RATE_PREFIX = "throttle:rate:";
+    private static final String THROTTLE_RUNNING_PREFIX = "throttle:running:";
+
+    private QueueKeys() {}
+
+    // Hash tag of one shard, empty when the queue is not sharded so the keys keep their original names
+    public static String shard(int shard, int shards) {
+        return shards <= 1 ? "" : "{" + shard + "}";
+    }
+
+    // The shard a job travels through, fixed by its ID so its retries come back to the same shard
+    // String.hashCode is specified by the JLS, so jobservice and every worker agree on it
+    public static int shardOf(String jobId, int shards) {
+        return shards <= 1 ? 0 : Math.floorMod(jobId.hashCode(), shards);
+    }
+
+    public static String queue(JobPriority priority, String shard) {
+        return QUEUE_PREFIX + suffix(priority) + shard;
+    }
+
+    public static String stream(JobPriority priority, String shard) {
+        return STREAM_PREFIX + suffix(priority) + shard;
+    }
+
+    public static String retry(JobPriority priority, String shard) {
+        return RETRY_PREFIX + suffix(priority) + shard;
+    }
+
+    public static String jobStatus(String jobId) {
+        return STATUS_PREFIX + jobId;
+    }
+
+    public static String throttleRate(String type) {
+        return THROTTLE_RATE_PREFIX + "{" + type + "}";
+    }
+
+    public static String throttleRunning(String type) {
+        return THROTTLE_RUNNING_PREFIX + "{" + type + "}";
+    }
+
+    private static String suffix(JobPriority priority) {
+        return priority == JobPriority.NORMAL ? "" : ":" + priority.name().toLowerCase();
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.worker.WorkerProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Redis LIST backed queue, the original design
+//   queue:jobs (LIST) job IDs waiting to be processed, one list per priority lane and shard (see QueueKeys)
+// Each batch is split across the lanes by LaneScheduler, when every lane is empty one BLPOP waits on all of them
+// With several shards the batch comes from the consumer's home shard or one stolen from, the BLPOP only covers the home shard
+// Every consumer thread keeps one dedicated connection for its pops and BLPOPs instead of opening one per poll,
+// it is only replaced after a Redis error
+// Retries and the DLQ are handled by AbstractRedisJobQueue
+
+@Component
+@ConditionalOnProperty(name = "worker.queue-backend", havingValue = "redis", matchIfMissing = true)
+public class RedisListJobQueue extends AbstractRedisJobQueue {
+
+    // Due retries go back with one multi-value RPUSH per chunk of 1000
+    private static final RedisScript<List> PROMOTION_SCRIPT = promotionScript("""
+                redis.call('RPUSH', KEYS[2], unpack(chunk))
+            """);
+
+    private final JobRepository jobRepository;
+    private final RedisConnectionFactory redisConnectionFactory; // Needed for blocking pop operations
+    private final byte[][][] laneKeys; // Queue keys per shard in priority order, BLPOP checks them in this order
+    private final ThreadLocal<RedisConnection> consumerConnection = new ThreadLocal<>(); // The calling consumer thread's connection
+    private final Set<RedisConnection> openConnections = ConcurrentHashMap.newKeySet(); // Every consumer's connection, closed on shutdown
+
+    public RedisListJobQueue(JobRepository jobRepository, RedisConnectionFactory redisConnectionFactory, StringRedisTemplate redisTemplate,
+                             WorkerProperties properties, JobMetrics metrics) {
+        super(redisTemplate, properties, metrics);
+        this.jobRepository = jobRepository;
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.laneKeys = new byte[shards][LANES.length][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (JobPriority lane : LANES) {
+                laneKeys[shard][lane.ordinal()] = queueKey(lane, shard).getBytes(StandardCharsets.UTF_8); // Low-level Redis operations use byte arrays
+            }
+        }
+    }
+
+    // Pops up to maxJobs job IDs, one LPOP key count per lane with the counts picked by LaneScheduler
+    // If every lane of every shard is empty, one BLPOP waits on all lanes of the home shard (highest priority wins when several fill at once)
+    // and the rest of the batch is topped up from the lanes again
+    // The popped IDs are claimed with one SQL statement
+    @Override
+    public List<JobEntity> claimBatch(int maxJobs, Duration timeout) {
+        int timeoutSeconds = (int) Math.max(1, blockingWait(timeout).toSeconds()); // BLPOP takes whole seconds
+        int home = homeShard();
+
+        long start = System.nanoTime();
+        List<PoppedId> popped;
+        RedisConnection connection = connection();
+        try {
+            popped = fillFromShards(maxJobs, (lane, shard, count) -> pop(connection, lane, shard, count));
+            if (popped.isEmpty()) {
+                var result = connection.bLPop(timeoutSeconds, laneKeys[home]); // Blocks until a job is available in any lane
+                                                                         // or the timeout passes
+                                                                         // BLPop returns a list with two elements: the key and the value
+                if (result == null || result.size() < 2) {
+                    return List.of(); // Nothing arrived in time
+                }
+                start = System.nanoTime(); // The wait above is idle time, not claim latency
+                popped = new ArrayList<>(maxJobs);
+                popped.add(new PoppedId(laneOf(home, result.get(0)), home, new String(result.get(1), StandardCharsets.UTF_8)));
+                popped.addAll(laneScheduler.fill(maxJobs - 1, (lane, count) -> pop(connection, lane, home, count))); // Grab whatever else is already waiting
+            }
+        } catch (RuntimeException e) {
+            discardConnection(); // It may be broken, the next poll opens a new one
+            throw e;
+        }
+
+        List<JobEntity> claimedJobs = claim(popped);
+        metrics.claim("redis", start);
+        return claimedJobs;
+    }
+
+    // The consumer thread's long-lived connection, opened on its first poll
+    // A blocking command needs a connection of its own, opening one per poll would cost a connect and handshake every time
+    private RedisConnection connection() {
+        RedisConnection connection = consumerConnection.get();
+        if (connection == null || connection.isClosed()) {
+            connection = redisConnectionFactory.getConnection();
+            consumerConnection.set(connection);
+            openConnections.add(connection);
+        }
+        return connection;
+    }
+
+    private void discardConnection() {
+        RedisConnection connection = consumerConnection.get();
+        consumerConnection.remove();
+        if (connection != null) {
+            openConnections.remove(connection);
+            close(connection);
+        }
+    }
+
+    // Called after RedisJobWorker stopped its consumers (it depends on this bean, so it is destroyed first)
+    @PreDestroy
+    public void closeConnections() {
+        openConnections.forEach(RedisListJobQueue::close);
+        openConnections.clear();
+    }
+
+    private static void close(RedisConnection connection) {
+        try {
+            connection.close();
+        } catch (Exception e) {
+            System.out.println("Redis connection close error: " + e.getMessage());
+        }
+    }
+
+    // Non-blocking LPOP key count on one lane of one shard
+    private List<PoppedId> pop(RedisConnection connection, JobPriority lane, int shard, int count) {
+        List<byte[]> ids = metrics.redis("lpop", () -> connection.listCommands().lPop(laneKeys[shard][lane.ordinal()], count));
+        if (ids == null) {
+            return List.of();
+        }
+        List<PoppedId> popped = new ArrayList<>(ids.size());
+        for (byte[] id : ids) {
+            popped.add(new PoppedId(lane, shard, new String(id, StandardCharsets.UTF_8)));
+        }
+        return popped;
+    }
+
+    private JobPriority laneOf(int shard, byte[] key) {
+        for (JobPriority lane : LANES) {
+            if (Arrays.equals(laneKeys[shard][lane.ordinal()], key)) {
+                return lane;
+            }
+        }
+        return JobPriority.NORMAL;
+    }
+
+    // Claim a batch of popped job IDs in the database
+    // IDs another worker already claimed are simply not returned
+    // If the claim itself fails the IDs are pushed back to the front of the lanes they came from so they are not lost
+    private List<JobEntity> claim(List<PoppedId> popped) {
+        List<String> jobIds = popped.stream().map(PoppedId::jobId).toList();
+        List<JobEntity> claimedJobs;
+        try {
+            claimedJobs = metrics.db("claim", () -> jobRepository.claimJobs(jobIds, properties.getId(), properties.getLeaseDuration().toMillis())); // Try to claim the jobs atomically in the database
+        } catch (RuntimeException e) {
+            for (PoppedId id : popped.reversed()) { // LPUSH one at a time in reverse keeps the original order at the front
+                redisTemplate.opsForList().leftPush(queueKey(id.lane(), id.shard()), id.jobId());
+            }
+            throw e;
+        }
+
+        if (claimedJobs.size() < jobIds.size()) {
+            System.out.println((jobIds.size() - claimedJobs.size()) + " of " + jobIds.size()
+                    + " popped jobs were already claimed by another worker, skipping...");
+        }
+        return claimedJobs;
+    }
+
+    @Override
+    protected RedisScript<List> promotionScript() {
+        return PROMOTION_SCRIPT;
+    }
+
+    @Override
+    protected String queueKey(JobPriority lane, int shard) {
+        return QueueKeys.queue(lane, shard(shard));
+    }
+
+    @Override
+    protected void push(RedisConnection connection, String queueKey, String jobId) {
+        connection.listCommands().rPush(queueKey.getBytes(StandardCharsets.UTF_8), jobId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected List<QueueDepth> queueDepths(JobPriority lane, int shard) {
+        return List.of(new QueueDepth("ready", laneName(lane), size(redisTemplate.opsForList().size(queueKey(lane, shard)))));
+    }
+
+    // A job ID and the lane and shard it was popped from
+    private record PoppedId(JobPriority lane, int shard, String jobId) {}
+
+}
@@ -0,0 +1,341 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.worker.WorkerProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Redis Streams backed queue
+//   stream:jobs (STREAM) one entry per job ID, field "jobId", read through the "jobworkers" consumer group
+//                        one stream per priority lane and shard (see QueueKeys), each with its own group
+// An entry stays in the group's pending list until the worker XACKs it, which happens only after the
+// job's outcome is stored, so a worker dying between read and claim no longer loses the job
+// Each batch is split across the lanes by LaneScheduler, when every lane is empty one blocking XREADGROUP waits on all of them
+// With several shards the batch comes from the consumer's home shard or one stolen from, the blocking read only covers the home shard
+// Entries left unacknowledged longer than worker.stream-reclaim-idle are taken over with XAUTOCLAIM
+// Streams are never capped with MAXLEN, approximate trimming would also drop entries not yet delivered or still pending,
+// leaving their jobs PENDING with nothing in Redis pointing at them; instead every entry is XDELed right after its XACK,
+// so a stream only holds undelivered and pending entries
+// Retries and the DLQ are handled by AbstractRedisJobQueue, due retries are XADDed back onto their lane's stream by its script
+
+@Component
+@ConditionalOnProperty(name = "worker.queue-backend", havingValue = "stream")
+public class RedisStreamJobQueue extends AbstractRedisJobQueue {
+    private static final String GROUP = "jobworkers"; // Consumer group shared by all workers
+    private static final String JOB_ID_FIELD = "jobId"; // Stream entry field holding the job ID
+
+    // Due retries go back as one XADD each, inside the same script call
+    private static final RedisScript<List> PROMOTION_SCRIPT = promotionScript("""
+                for _, jobId in ipairs(chunk) do
+                    redis.call('XADD', KEYS[2], '*', 'jobId', jobId)
+                end
+            """);
+
+    // XAUTOCLAIM returns nested entries, flatten them to [nextCursor, entryId1, jobId1, entryId2, jobId2, ...]
+    // Entries deleted from the stream come back without fields and are skipped
+    private static final RedisScript<List> AUTOCLAIM_SCRIPT = new DefaultRedisScript<>("""
+        local res = redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[4], 'COUNT', ARGV[5])
+        local out = { res[1] }
+        for _, entry in ipairs(res[2]) do
+            local fields = entry[2]
+            if fields then
+                for i = 1, #fields, 2 do
+                    if fields[i] == 'jobId' then
+                        table.insert(out, entry[1])
+                        table.insert(out, fields[i + 1])
+                    end
+                end
+            end
+        end
+        return out
+        """, List.class);
+
+    // XINFO GROUPS for one group as { lag, pending }, lag is -1 if Redis can't tell (before 7.0, or after entries were deleted)
+    private static final RedisScript<List> GROUP_DEPTH_SCRIPT = new DefaultRedisScript<>("""
+        for _, group in ipairs(redis.call('XINFO', 'GROUPS', KEYS[1])) do
+            local info = {}
+            for i = 1, #group, 2 do
+                info[group[i]] = group[i + 1]
+            end
+            if info['name'] == ARGV[1] then
+                local lag = info['lag']
+                if not lag then
+                    lag = -1
+                end
+                return { lag, info['pending'] }
+            end
+        end
+        return { 0, 0 }
+        """, List.class);
+
+    private final JobRepository jobRepository;
+
+    private final Map<String, StreamEntry> inFlightEntries = new ConcurrentHashMap<>(); // job ID -> stream entry to XACK when the job is done
+    private final Queue<StreamEntry> readAhead = new ConcurrentLinkedQueue<>(); // Entries a blocking read returned beyond the batch, claimed on the next poll
+    private final AtomicLong nextReclaimAt = new AtomicLong(); // Epoch millis of the next XAUTOCLAIM pass
+    private final Map<String, String> reclaimCursors = new ConcurrentHashMap<>(); // Stream key -> where the next XAUTOCLAIM pass continues scanning its pending list
+    private final Map<String, JobPriority> laneByStream = new LinkedHashMap<>(); // Stream key -> its lane, for every lane and shard
+
+    public RedisStreamJobQueue(JobRepository jobRepository, StringRedisTemplate redisTemplate, WorkerProperties properties,
+                               JobMetrics metrics) {
+        super(redisTemplate, properties, metrics);
+        this.jobRepository = jobRepository;
+        for (int shard = 0; shard < shards; shard++) {
+            for (JobPriority lane : LANES) {
+                laneByStream.put(queueKey(lane, shard), lane);
+                createGroup(queueKey(lane, shard));
+            }
+        }
+    }
+
+    // Create the consumer group (and the stream) if this is the first worker to start
+    private void createGroup(String streamKey) {
+        try {
+            redisTemplate.opsForStream().createGroup(streamKey, ReadOffset.from("0-0"), GROUP);
+        } catch (Exception e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.contains("BUSYGROUP")) { // BUSYGROUP means another worker already created it
+                throw e;
+            }
+        }
+    }
+
+    // Takes over stalled entries first, then entries left over from the last blocking read,
+    // then new entries with one non-blocking XREADGROUP COUNT per lane (counts picked by LaneScheduler)
+    // If every lane of every shard is empty, one blocking XREADGROUP COUNT 1 waits on all lane streams of the home shard
+    @Override
+    public List<JobEntity> claimBatch(int maxJobs, Duration timeout) {
+        long start = System.nanoTime();
+        List<JobEntity> reclaimed = reclaimStalled(maxJobs);
+        if (!reclaimed.isEmpty()) {
+            metrics.claim("stream", start);
+            return reclaimed;
+        }
+
+        List<StreamEntry> entries = new ArrayList<>(maxJobs);
+        StreamEntry leftOver;
+        while (entries.size() < maxJobs && (leftOver = readAhead.poll()) != null) {
+            entries.add(leftOver);
+        }
+        entries.addAll(fillFromShards(maxJobs - entries.size(), this::read));
+
+        if (entries.isEmpty()) {
+            List<StreamEntry> arrived = readBlocking(blockingWait(timeout));
+            if (arrived.isEmpty()) {
+                return List.of(); // Nothing arrived in time
+            }
+            start = System.nanoTime(); // The wait above is idle time, not claim latency
+            for (StreamEntry entry : arrived) { // COUNT 1 per stream, so this can be one entry per lane
+                if (entries.size() < maxJobs) {
+                    entries.add(entry);
+                } else {
+                    readAhead.add(entry); // Already delivered to this consumer, keep it for the next poll instead of reading it again
+                }
+            }
+        }
+
+        List<JobEntity> claimedJobs = claim(entries, ids -> jobRepository.claimJobs(ids, properties.getId(), properties.getLeaseDuration().toMillis()));
+        metrics.claim("stream", start);
+        return claimedJobs;
+    }
+
+    // Non-blocking read of up to count new entries from one lane of one shard
+    @SuppressWarnings("unchecked")
+    private List<StreamEntry> read(JobPriority lane, int shard, int count) {
+        List<MapRecord<String, Object, Object>> records = metrics.redis("xreadgroup", () -> redisTemplate.opsForStream().read(
+                Consumer.from(GROUP, properties.getId()),
+                StreamReadOptions.empty().count(count),
+                StreamOffset.create(queueKey(lane, shard), ReadOffset.lastConsumed())));
+        return toEntries(records);
+    }
+
+    // Wait up to timeout for the first new entry on any lane of the home shard
+    @SuppressWarnings("unchecked")
+    private List<StreamEntry> readBlocking(Duration timeout) {
+        int home = homeShard();
+        StreamOffset<String>[] offsets = new StreamOffset[LANES.length];
+        for (JobPriority lane : LANES) {
+            offsets[lane.ordinal()] = StreamOffset.create(queueKey(lane, home), ReadOffset.lastConsumed());
+        }
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                Consumer.from(GROUP, properties.getId()),
+                StreamReadOptions.empty().count(1).block(timeout),
+                offsets);
+        List<StreamEntry> entries = toEntries(records);
+        entries.sort(Comparator.comparing(StreamEntry::lane)); // Highest priority first if several lanes had an entry
+        return entries;
+    }
+
+    private List<StreamEntry> toEntries(List<MapRecord<String, Object, Object>> records) {
+        if (records == null || records.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<StreamEntry> entries = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            String stream = record.getStream();
+            Object jobId = record.getValue().get(JOB_ID_FIELD);
+            if (jobId == null) {
+                ack(stream, List.of(record.getId())); // Malformed entry, nothing to run for it
+            } else {
+                entries.add(new StreamEntry(laneByStream.getOrDefault(stream, JobPriority.NORMAL), stream, jobId.toString(), record.getId()));
+            }
+        }
+        return entries;
+    }
+
+    // Every worker.stream-reclaim-interval, take over entries another consumer read but never acknowledged
+    // Their jobs may have been left IN_PROGRESS by a dead worker, so they are claimed with reclaimJobs (only once the lease expired)
+    private List<JobEntity> reclaimStalled(int maxJobs) {
+        long now = System.currentTimeMillis();
+        long due = nextReclaimAt.get();
+        if (now < due || !nextReclaimAt.compareAndSet(due, now + properties.getStreamReclaimInterval().toMillis())) {
+            return List.of(); // Not due yet, or another consumer thread is doing this pass
+        }
+
+        List<StreamEntry> entries = new ArrayList<>();
+        for (String stream : laneByStream.keySet()) {
+            if (entries.size() >= maxJobs) {
+                nextReclaimAt.set(now); // Batch is full, the remaining streams are scanned on the next poll
+                break;
+            }
+            entries.addAll(autoclaim(stream, maxJobs - entries.size(), now));
+        }
+        if (!entries.isEmpty()) {
+            System.out.println("Reclaimed " + entries.size() + " stalled stream entries");
+        }
+        return claim(entries, ids -> jobRepository.reclaimJobs(ids, properties.getId(), properties.getLeaseDuration().toMillis()));
+    }
+
+    // One XAUTOCLAIM call on one lane's stream in one shard
+    private List<StreamEntry> autoclaim(String stream, int count, long now) {
+        List<?> result = metrics.redis("xautoclaim", () -> redisTemplate.execute(AUTOCLAIM_SCRIPT, List.of(stream),
+                GROUP, properties.getId(), String.valueOf(properties.getStreamReclaimIdle().toMillis()),
+                reclaimCursors.getOrDefault(stream, "0-0"), String.valueOf(count)));
+        if (result == null || result.isEmpty()) {
+            return List.of();
+        }
+
+        String cursor = result.get(0).toString(); // "0-0" once the whole pending list has been scanned
+        reclaimCursors.put(stream, cursor);
+        if (!"0-0".equals(cursor)) {
+            nextReclaimAt.set(now); // More to scan, keep going on the next poll
+        }
+
+        List<StreamEntry> entries = new ArrayList<>();
+        for (int i = 1; i + 1 < result.size(); i += 2) {
+            entries.add(new StreamEntry(laneByStream.get(stream), stream, result.get(i + 1).toString(), RecordId.of(result.get(i).toString())));
+        }
+        return entries;
+    }
+
+    // Claim the jobs behind a set of stream entries
+    // Entries whose job could not be claimed (already done, running elsewhere, or the same job twice) are acknowledged right away
+    // If the claim statement throws, the entries stay pending and are reclaimed later
+    private List<JobEntity> claim(List<StreamEntry> entries, Function<Collection<String>, List<JobEntity>> claimer) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        Map<String, StreamEntry> byJobId = new LinkedHashMap<>();
+        List<StreamEntry> unclaimed = new ArrayList<>();
+        for (StreamEntry entry : entries) {
+            StreamEntry previous = byJobId.put(entry.jobId(), entry);
+            if (previous != null) {
+                unclaimed.add(previous);
+            }
+        }
+
+        List<JobEntity> claimedJobs = metrics.db("claim", () -> claimer.apply(byJobId.keySet()));
+
+        for (JobEntity job : claimedJobs) {
+            inFlightEntries.put(job.getId(), byJobId.remove(job.getId()));
+        }
+        unclaimed.addAll(byJobId.values());
+        if (!unclaimed.isEmpty()) {
+            System.out.println(unclaimed.size() + " stream entries pointed at jobs that were already claimed or finished, acknowledging");
+            for (StreamEntry entry : unclaimed) {
+                ack(entry.stream(), List.of(entry.entryId()));
+            }
+        }
+        return claimedJobs;
+    }
+
+    @Override
+    public void acknowledge(JobEntity job) {
+        StreamEntry entry = inFlightEntries.remove(job.getId());
+        if (entry != null) {
+            ack(entry.stream(), List.of(entry.entryId()));
+        }
+    }
+
+    // XACK then XDEL in one round trip, an acknowledged entry is never read again and only took up memory
+    private void ack(String stream, List<RecordId> entryIds) {
+        byte[] key = stream.getBytes(StandardCharsets.UTF_8);
+        RecordId[] ids = entryIds.toArray(new RecordId[0]);
+        metrics.redis("xack", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.streamCommands().xAck(key, GROUP, ids);
+            connection.streamCommands().xDel(key, ids);
+            return null; // Pipelined callbacks must return null
+        }));
+    }
+
+    @Override
+    protected RedisScript<List> promotionScript() {
+        return PROMOTION_SCRIPT;
+    }
+
+    @Override
+    protected String queueKey(JobPriority lane, int shard) {
+        return QueueKeys.stream(lane, shard(shard));
+    }
+
+    @Override
+    protected void push(RedisConnection connection, String queueKey, String jobId) {
+        MapRecord<byte[], byte[], byte[]> record = MapRecord.create(queueKey.getBytes(StandardCharsets.UTF_8),
+                Map.of(JOB_ID_FIELD.getBytes(StandardCharsets.UTF_8), jobId.getBytes(StandardCharsets.UTF_8)));
+        connection.streamCommands().xAdd(record); // No MAXLEN, see the header
+    }
+
+    @Override
+    protected List<QueueDepth> queueDepths(JobPriority lane, int shard) {
+        List<?> result = redisTemplate.execute(GROUP_DEPTH_SCRIPT, List.of(queueKey(lane, shard)), GROUP);
+        if (result == null || result.size() < 2) {
+            return List.of();
+        }
+        return List.of(
+                new QueueDepth("ready", laneName(lane), Long.parseLong(result.get(0).toString())),
+                new QueueDepth("unacked", laneName(lane), Long.parseLong(result.get(1).toString())));
+    }
+
+    // A stream entry and the lane and stream it was read from
+    private record StreamEntry(JobPriority lane, String stream, String jobId, RecordId entryId) {}
+
+}
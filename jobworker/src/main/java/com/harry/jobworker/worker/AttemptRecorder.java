@@ -0,0 +1,114 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.metrics.JobMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Appends one job_attempts row per attempt this worker ran: attempt number, worker, outcome, start, duration and the error
+// Rows are collected for up to worker.attempt-flush-interval or worker.attempt-batch-size rows and written with one INSERT
+// Unlike completions nothing waits for them: history is best effort, a full queue (Postgres down for a while)
+// drops new rows and counts them in jobs.attempts.dropped, and rows still queued when the JVM dies are lost
+
+@Component
+public class AttemptRecorder {
+    private static final int MAX_ERROR_LENGTH = 4000; // Longer messages are cut, stack traces stay in the logs
+    private static final int QUEUE_CAPACITY = 100_000; // Attempts waiting to be written at most
+
+    private static final String INSERT_SQL = """
+        INSERT INTO job_attempts (job_id, attempt, worker_id, outcome, started_at, duration_ms, error)
+        SELECT id, attempt, ?, outcome, started_at, duration_ms, error
+        FROM unnest(?::varchar[], ?::int[], ?::varchar[], ?::timestamptz[], ?::bigint[], ?::text[])
+            AS a(id, attempt, outcome, started_at, duration_ms, error)
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
+
+    private final BlockingQueue<Attempt> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public AttemptRecorder(JdbcTemplate jdbcTemplate, WorkerProperties properties, JobMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.flusher = Thread.ofPlatform().name("attempt-flusher").daemon().start(this::flushLoop);
+    }
+
+    // attempt is 1-based, error is null for attempts that did not fail
+    public void record(JobEntity job, int attempt, Instant startedAt, long startNanos, String outcome, String error) {
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (error != null && error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        if (!pending.offer(new Attempt(job.getId(), attempt, outcome, startedAt, durationMillis, error))) {
+            metrics.attemptDropped();
+        }
+    }
+
+    // Runs until shutdown, every queued attempt is written before the thread exits
+    private void flushLoop() {
+        List<Attempt> batch = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                Attempt first = pending.poll(100, TimeUnit.MILLISECONDS); // Wakes up now and then to notice shutdown
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long flushAt = System.nanoTime() + properties.getAttemptFlushInterval().toNanos();
+                while (batch.size() < properties.getAttemptBatchSize()) {
+                    long wait = flushAt - System.nanoTime();
+                    Attempt next = wait > 0 ? pending.poll(wait, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Attempt> batch) {
+        try {
+            metrics.db("record_attempts", () -> jdbcTemplate.update(INSERT_SQL, ps -> {
+                ps.setString(1, properties.getId());
+                ps.setArray(2, ps.getConnection().createArrayOf("varchar", batch.stream().map(Attempt::jobId).toArray()));
+                ps.setArray(3, ps.getConnection().createArrayOf("int4", batch.stream().map(Attempt::attempt).toArray()));
+                ps.setArray(4, ps.getConnection().createArrayOf("varchar", batch.stream().map(Attempt::outcome).toArray()));
+                ps.setArray(5, ps.getConnection().createArrayOf("timestamptz", batch.stream().map(a -> Timestamp.from(a.startedAt())).toArray()));
+                ps.setArray(6, ps.getConnection().createArrayOf("int8", batch.stream().map(Attempt::durationMillis).toArray()));
+                ps.setArray(7, ps.getConnection().createArrayOf("text", batch.stream().map(Attempt::error).toArray()));
+            }));
+        } catch (RuntimeException e) {
+            System.out.println("Attempt history write error, " + batch.size() + " attempts not recorded: " + e.getMessage());
+        }
+    }
+
+    // Called after RedisJobWorker drained (it depends on this bean, so it is destroyed first)
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(1000);
+    }
+
+    private record Attempt(String jobId, int attempt, String outcome, Instant startedAt, long durationMillis, String error) {}
+
+}
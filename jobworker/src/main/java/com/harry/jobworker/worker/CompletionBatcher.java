@@ -0,0 +1,288 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.queue.JobQueue;
+import com.harry.jobworker.queue.JobStatusCache;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Coalesces job completions from all running jobs into one UPDATE per flush
+// A finished job hands its completion over and waits (on its virtual thread) until the batch containing it is committed,
+// the flusher collects completions for up to worker.completion-flush-interval or worker.completion-batch-size jobs,
+// whichever comes first, and marks them COMPLETED with a single statement guarded like every other transition
+// (IN_PROGRESS, same attempt, leased to this worker)
+// The same statement releases job graph children: the completed jobs' job_dependencies rows are deleted and subtracted
+// from each WAITING child's pending_parents, a child whose last parent just completed becomes PENDING
+// For the Redis backends those children also get job_outbox rows in the statement, so they are queued even if this worker dies,
+// and once the batch is committed the due ones are pushed straight onto their lanes and their outbox rows deleted,
+// the next step of a graph starts without waiting for the OutboxRelay. In postgres mode a NOTIFY wakes the workers instead
+// Results handlers set are written to job_results in the same transaction, only for the jobs that really completed,
+// compressed once they are over worker.result-compression-threshold bytes (on the job's thread, not the flusher)
+
+@Component
+public class CompletionBatcher {
+    // completed: the guarded UPDATE, edges: their outgoing job_dependencies, released: children with their counters lowered
+    // Two parents of one child completing in different batches update the child row one after the other,
+    // the second UPDATE re-reads pending_parents after the first commits, so exactly one of them releases it
+    private static final String COMPLETE_CTE = """
+        WITH completed AS (
+            UPDATE jobs
+            SET status = 'COMPLETED', lease_owner = NULL, lease_expires_at = NULL
+            FROM unnest(?::varchar[], ?::int[]) AS done(id, attempts)
+            WHERE jobs.id = done.id AND jobs.attempts = done.attempts
+              AND jobs.status = 'IN_PROGRESS' AND jobs.lease_owner = ?
+            RETURNING jobs.id
+        ), edges AS (
+            DELETE FROM job_dependencies
+            WHERE parent_id IN (SELECT id FROM completed)
+            RETURNING child_id
+        ), released AS (
+            UPDATE jobs
+            SET pending_parents = jobs.pending_parents - e.parents,
+                status = CASE WHEN jobs.pending_parents = e.parents THEN 'PENDING' ELSE jobs.status END,
+                available_at = CASE WHEN jobs.pending_parents = e.parents THEN greatest(jobs.available_at, now()) ELSE jobs.available_at END
+            FROM (SELECT child_id, count(*) AS parents FROM edges GROUP BY child_id) AS e
+            WHERE jobs.id = e.child_id AND jobs.status = 'WAITING'
+            RETURNING jobs.id, jobs.status, coalesce(jobs.priority, 'NORMAL') AS priority, jobs.available_at
+        )""";
+
+    // Completed IDs come back with a NULL priority, released children with their lane and run time
+    private static final String COMPLETE_SQL = COMPLETE_CTE + """
+
+        SELECT id, NULL AS priority, NULL::timestamptz AS available_at, NULL::bigint AS outbox_id FROM completed
+        UNION ALL
+        SELECT id, priority, available_at, NULL FROM released WHERE status = 'PENDING'
+        """;
+
+    // Redis backends, released children are also written to the outbox
+    private static final String COMPLETE_OUTBOX_SQL = COMPLETE_CTE + """
+        , outboxed AS (
+            INSERT INTO job_outbox (job_id, priority, created_at, available_at)
+            SELECT id, priority, now(), available_at FROM released WHERE status = 'PENDING'
+            RETURNING id, job_id
+        )
+        SELECT id, NULL AS priority, NULL::timestamptz AS available_at, NULL::bigint AS outbox_id FROM completed
+        UNION ALL
+        SELECT released.id, released.priority, released.available_at, outboxed.id FROM released JOIN outboxed ON outboxed.job_id = released.id
+        """;
+
+    // A job requeued from the DLQ and completed again replaces its old result
+    private static final String INSERT_RESULT_SQL = """
+        INSERT INTO job_results (job_id, encoding, size, data, created_at, expires_at)
+        VALUES (?, ?, ?, ?, now(), now() + make_interval(secs => ?))
+        ON CONFLICT (job_id) DO UPDATE
+        SET encoding = excluded.encoding, size = excluded.size, data = excluded.data,
+            created_at = excluded.created_at, expires_at = excluded.expires_at
+        """;
+
+    private static final String DELETE_OUTBOX_SQL = "DELETE FROM job_outbox WHERE id = ANY(?::bigint[])";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate; // Completions and their results commit together
+    private final JobQueue jobQueue;
+    private final JobStatusCache statusCache;
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
+    private final String completeSql;
+
+    private final BlockingQueue<Completion> pending = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public CompletionBatcher(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, JobQueue jobQueue, JobStatusCache statusCache,
+                             WorkerProperties properties, JobMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jobQueue = jobQueue;
+        this.statusCache = statusCache;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.completeSql = "postgres".equalsIgnoreCase(properties.getQueueBackend()) ? COMPLETE_SQL : COMPLETE_OUTBOX_SQL;
+        this.flusher = Thread.ofPlatform().name("completion-flusher").daemon().start(this::flushLoop);
+    }
+
+    // Mark the job COMPLETED, returns once that is committed
+    // false if the job was no longer ours to complete (lease lost), throws if the UPDATE failed
+    public boolean complete(JobEntity job) {
+        return complete(job, null);
+    }
+
+    // Same, storing the handler's result with it, null stores none
+    public boolean complete(JobEntity job, String result) {
+        Completion completion = new Completion(job.getId(), job.getAttempts(), result == null ? null : encode(result), new CompletableFuture<>());
+        pending.add(completion);
+        try {
+            return completion.done().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // Runs until shutdown, every waiting completion is flushed before the thread exits
+    private void flushLoop() {
+        List<Completion> batch = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                Completion first = pending.poll(100, TimeUnit.MILLISECONDS); // Wakes up now and then to notice shutdown
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long flushAt = System.nanoTime() + properties.getCompletionFlushInterval().toNanos();
+                while (batch.size() < properties.getCompletionBatchSize()) {
+                    long wait = flushAt - System.nanoTime();
+                    Completion next = wait > 0 ? pending.poll(wait, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Completion> batch) {
+        List<Released> released = new ArrayList<>();
+        try {
+            Set<String> completed = new HashSet<>();
+            metrics.db("complete_batch", () -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.query(completeSql, ps -> {
+                    Array ids = ps.getConnection().createArrayOf("varchar", batch.stream().map(Completion::jobId).toArray());
+                    Array attempts = ps.getConnection().createArrayOf("int4", batch.stream().map(Completion::attempts).toArray());
+                    ps.setArray(1, ids);
+                    ps.setArray(2, attempts);
+                    ps.setString(3, properties.getId());
+                }, rs -> {
+                    String priority = rs.getString("priority");
+                    if (priority == null) {
+                        completed.add(rs.getString("id"));
+                    } else {
+                        Timestamp availableAt = rs.getTimestamp("available_at");
+                        Long outboxId = rs.getObject("outbox_id", Long.class);
+                        released.add(new Released(rs.getString("id"), JobPriority.valueOf(priority),
+                                availableAt == null ? Instant.now() : availableAt.toInstant(), outboxId));
+                    }
+                });
+                storeResults(batch, completed);
+            }));
+            for (Completion completion : batch) {
+                completion.done().complete(completed.contains(completion.jobId()));
+            }
+        } catch (RuntimeException e) {
+            for (Completion completion : batch) {
+                completion.done().completeExceptionally(e); // Each job handles it like a failed completeJob did
+            }
+            return;
+        }
+        if (!released.isEmpty()) {
+            enqueueReleased(released); // After the parents' workers were let go
+        }
+    }
+
+    // One row per completed job that has a result
+    private void storeResults(List<Completion> batch, Set<String> completed) {
+        List<Completion> withResults = batch.stream().filter(c -> c.result() != null && completed.contains(c.jobId())).toList();
+        if (withResults.isEmpty()) {
+            return;
+        }
+        double ttlSeconds = properties.getResultTtl().toMillis() / 1000.0;
+        jdbcTemplate.batchUpdate(INSERT_RESULT_SQL, withResults, withResults.size(), (ps, completion) -> {
+            ps.setString(1, completion.jobId());
+            ps.setString(2, completion.result().encoding());
+            ps.setInt(3, completion.result().size());
+            ps.setBytes(4, completion.result().data());
+            ps.setDouble(5, ttlSeconds);
+        });
+    }
+
+    // identity up to worker.result-compression-threshold bytes, deflate (fastest level) above
+    private StoredResult encode(String result) {
+        byte[] bytes = result.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= properties.getResultCompressionThreshold()) {
+            return new StoredResult("identity", bytes.length, bytes);
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory streams do not fail
+        } finally {
+            deflater.end();
+        }
+        return new StoredResult("deflate", bytes.length, compressed.toByteArray());
+    }
+
+    // Push the released children that may run now onto their lanes, one enqueue per lane, then drop their outbox rows
+    // If the push fails the rows stay and the OutboxRelay queues them, children scheduled for later are always left to it
+    private void enqueueReleased(List<Released> released) {
+        statusCache.evictAll(released.stream().map(Released::jobId).toList()); // jobservice may have cached them as WAITING
+
+        Instant now = Instant.now();
+        Map<JobPriority, List<Released>> dueByLane = new EnumMap<>(JobPriority.class);
+        for (Released job : released) {
+            if (!job.availableAt().isAfter(now)) {
+                dueByLane.computeIfAbsent(job.priority(), lane -> new ArrayList<>()).add(job);
+            }
+        }
+        dueByLane.forEach((lane, jobs) -> {
+            try {
+                jobQueue.enqueue(lane, jobs.stream().map(Released::jobId).toList());
+                Object[] outboxIds = jobs.stream().map(Released::outboxId).filter(id -> id != null).toArray();
+                if (outboxIds.length > 0) {
+                    metrics.db("outbox_delete", () -> jdbcTemplate.update(DELETE_OUTBOX_SQL, ps ->
+                            ps.setArray(1, ps.getConnection().createArrayOf("int8", outboxIds))));
+                }
+            } catch (Exception e) {
+                System.out.println("Released job enqueue error, left to the outbox relay: " + e.getMessage());
+            }
+        });
+    }
+
+    // Called after RedisJobWorker drained (it depends on this bean, so it is destroyed first)
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(1000);
+    }
+
+    private record Completion(String jobId, int attempts, StoredResult result, CompletableFuture<Boolean> done) {}
+
+    // A result as written to job_results, size is the length before compression
+    private record StoredResult(String encoding, int size, byte[] data) {}
+
+    // A job graph child that became PENDING, outboxId is null in postgres mode
+    private record Released(String jobId, JobPriority priority, Instant availableAt, Long outboxId) {}
+
+}
@@ -0,0 +1,77 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.metrics.JobMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Paces the consumer threads of RedisJobWorker from the moving averages kept by JobMetrics
+// Prefetch: besides one job per free slot, consumers claim up to prefetch() more that wait on this worker with their lease held,
+//   so a finished job's slot is refilled without a claim round trip. The target is the number of jobs expected to finish
+//   during one claim (concurrency * claim latency / execution latency), capped at worker.max-prefetch
+// Backpressure: while the average Postgres or Redis call takes longer than worker.backpressure-latency there is no prefetch
+//   and every claim round is preceded by a pause, so claimed jobs don't pile up IN_PROGRESS behind a slow database
+// Pauses (slow stores and failed rounds, counted separately) double every round from worker.backoff-base up to worker.backoff-max
+// and are drawn at random below that ceiling (full jitter), so workers that slowed down together don't come back together
+
+@Component
+public class ConsumptionController {
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
+
+    private final AtomicInteger slowRounds = new AtomicInteger(); // Claim rounds in a row that started while the stores were slow
+    private final AtomicInteger failedRounds = new AtomicInteger(); // Claim rounds in a row that failed
+
+    public ConsumptionController(WorkerProperties properties, JobMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    // Jobs to claim ahead of free slots right now, 0 until both averages have samples
+    public int prefetch() {
+        int max = properties.getMaxPrefetch();
+        double claimNanos = metrics.claimLatency();
+        double executionNanos = metrics.executionLatency();
+        if (max <= 0 || claimNanos < 0 || executionNanos <= 0 || overloaded()) {
+            return 0;
+        }
+        double finishingPerClaim = Math.max(1, properties.getConcurrency()) * claimNanos / executionNanos;
+        return (int) Math.min(max, Math.ceil(finishingPerClaim));
+    }
+
+    // Pause before the next claim round, zero while the stores keep up
+    public Duration beforeClaim() {
+        if (!overloaded()) {
+            slowRounds.set(0);
+            return Duration.ZERO;
+        }
+        Duration pause = backoff(slowRounds.incrementAndGet());
+        metrics.backoff("latency", pause);
+        return pause;
+    }
+
+    // Pause after a claim round failed
+    public Duration afterFailure() {
+        Duration pause = backoff(failedRounds.incrementAndGet());
+        metrics.backoff("error", pause);
+        return pause;
+    }
+
+    public void succeeded() {
+        failedRounds.set(0);
+    }
+
+    private boolean overloaded() {
+        long threshold = properties.getBackpressureLatency().toNanos();
+        return threshold > 0 && (metrics.dbLatency() > threshold || metrics.redisLatency() > threshold);
+    }
+
+    // Uniform between 0 and min(backoff-max, backoff-base * 2^(round - 1))
+    private Duration backoff(int round) {
+        long ceiling = Math.min(properties.getBackoffMax().toMillis(), properties.getBackoffBase().toMillis() << Math.min(round - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+}
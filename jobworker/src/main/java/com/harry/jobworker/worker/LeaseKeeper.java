@@ -0,0 +1,76 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.metrics.JobMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Heartbeat for the jobs this worker is running
+// The worker holds a job's ID here while it runs, every worker.lease-renew-interval all held leases
+// are pushed out to now + worker.lease-duration in a single UPDATE (at most worker.concurrency IDs)
+// If the JVM dies the heartbeat stops with it and LeaseReaper on another worker re-queues the jobs
+// The heartbeat has its own thread instead of Spring's TaskScheduler: a reap or promotion pass stuck on a slow
+// Postgres would otherwise hold back renewals past worker.lease-duration and get healthy running jobs reaped and run twice
+
+@Component
+public class LeaseKeeper {
+    private final JobRepository jobRepository;
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
+
+    private final Set<String> held = ConcurrentHashMap.newKeySet(); // IDs of jobs running on this worker right now
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("lease-heartbeat").daemon().factory()); // Runs nothing but renew()
+
+    public LeaseKeeper(JobRepository jobRepository, WorkerProperties properties, JobMetrics metrics) {
+        this.jobRepository = jobRepository;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = properties.getLeaseRenewInterval().toMillis();
+        heartbeat.scheduleWithFixedDelay(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void hold(String jobId) {
+        held.add(jobId);
+    }
+
+    public void release(String jobId) {
+        held.remove(jobId);
+    }
+
+    public void renew() {
+        if (held.isEmpty()) {
+            return;
+        }
+        List<String> jobIds = List.copyOf(held);
+        try {
+            int renewed = metrics.db("renew_leases", () -> jobRepository.renewLeases(jobIds, properties.getId(),
+                    properties.getLeaseDuration().toMillis()));
+            if (renewed < jobIds.size()) { // Some finished in between, or were reaped because a renewal came too late
+                System.out.println("Renewed " + renewed + " of " + jobIds.size() + " job leases, the rest finished or were lost");
+            }
+        } catch (Exception e) {
+            System.out.println("Lease renewal error: " + e.getMessage()); // Tried again next interval, the lease is 3 intervals long by default
+        }
+    }
+
+    // Called after RedisJobWorker drained (it depends on this bean), so leases are renewed until the last job finished
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.jobs.JobStatus;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.queue.JobQueue;
+import com.harry.jobworker.queue.JobStatusCache;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Re-queues jobs whose worker stopped renewing their lease (crashed, killed mid-deploy, hung)
+// Every worker.lease-reap-interval one indexed UPDATE ... SKIP LOCKED flips up to worker.lease-reap-batch-size
+// expired IN_PROGRESS rows back to PENDING (or FAILED on their last attempt), then the IDs are handed to the queue backend
+// Every worker runs this, SKIP LOCKED keeps them from reaping the same rows
+
+@Component
+public class LeaseReaper {
+    private final JobRepository jobRepository;
+    private final JobQueue jobQueue;
+    private final JobStatusCache statusCache;
+    private final TaskScheduler taskScheduler;
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
+
+    public LeaseReaper(JobRepository jobRepository, JobQueue jobQueue, JobStatusCache statusCache, TaskScheduler taskScheduler,
+                       WorkerProperties properties, JobMetrics metrics) {
+        this.jobRepository = jobRepository;
+        this.jobQueue = jobQueue;
+        this.statusCache = statusCache;
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::reap, properties.getLeaseReapInterval());
+    }
+
+    public void reap() {
+        try {
+            List<JobEntity> reaped;
+            do {
+                reaped = metrics.db("reap_leases", () -> jobRepository.reapExpiredLeases(RedisJobWorker.MAX_RETRIES, properties.getLeaseReapBatchSize()));
+                statusCache.writeAll(reaped);
+                long now = System.currentTimeMillis();
+                for (JobEntity job : reaped) {
+                    if (job.getStatus() == JobStatus.FAILED) {
+                        jobQueue.deadLetter(job);
+                        metrics.processed(job, "dead_lettered");
+                    } else {
+                        jobQueue.scheduleRetry(job, now); // Due right away, promoted onto its lane with the other retries
+                        metrics.processed(job, "reaped");
+                    }
+                }
+                if (!reaped.isEmpty()) {
+                    System.out.println("Re-queued " + reaped.size() + " jobs with expired leases");
+                }
+            } while (reaped.size() == properties.getLeaseReapBatchSize()); // A full batch means there may be more
+        } catch (Exception e) {
+            System.out.println("Lease reaper error: " + e.getMessage());
+        }
+    }
+
+}
@@ -1,125 +1,334 @@
 package com.harry.jobworker.worker;
 
+import com.harry.jobworker.handlers.ExecutionMode;
+import com.harry.jobworker.handlers.JobContext;
+import com.harry.jobworker.handlers.JobHandler;
+import com.harry.jobworker.handlers.JobHandlerRegistry;
 import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPayloadStore;
 import com.harry.jobworker.jobs.JobStatus;
 import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.queue.JobQueue;
+import com.harry.jobworker.queue.JobStatusCache;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.data.redis.connection.RedisConnection;
-import org.springframework.data.redis.connection.RedisConnectionFactory; // Importing RedisConnectionFactory for Redis connections
 import org.springframework.stereotype.Component;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import jakarta.annotation.PreDestroy;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Component // Marking the class as a Spring component
            // Tells Spring to create this class automatically when the application starts
 public class RedisJobWorker implements CommandLineRunner{ // Tells spring to run this code
                                                           // immediately after the application finishes starting up
-    private static final String RETRY_ZSET = "retry:jobs"; // Key for the Redis sorted set for retrying jobs
-    private static final String DEAD_LETTER_KEY = "deadletter:jobs"; // Key for the Redis dead letter queue
-
-    private static final int MAX_RETRIES = 3; // Maximum number of retries for a job
+    static final int MAX_RETRIES = 3; // Maximum number of retries for a job, LeaseReaper counts a lost run against it too
     private static final long BASE_BACKOFF_MILLIS = 2000; // Base backoff time in milliseconds for retries
     private static final long MAX_BACKOFF_MILLIS = 30000; // Maximum backoff time in milliseconds
 
-    private final StringRedisTemplate redisTemplate; // Template for Redis operations
     private final JobRepository jobRepository; // Repository for accessing job data
-                                               // Lets you open a connection to Redis
-                                               // Needed for blocking pop operations
-    private final RedisConnectionFactory redisConnectionFactory; // Factory for creating Redis connections
+    private final JobQueue jobQueue; // Where jobs are claimed from and failed jobs are sent, Redis or Postgres (worker.queue-backend)
+    private final WorkerProperties properties; // Pool size, poll timeout and shutdown settings
+    private final JobMetrics metrics; // Queue wait, execution time, DB timings and outcome counters
+    private final JobHandlerRegistry handlers; // Job type -> the JobHandler that runs it
+    private final LeaseKeeper leases; // Renews the lease of every job running here
+    private final JobStatusCache statusCache; // Status projection polled through GET /jobs/{id}, written after every transition
+    private final CompletionBatcher completions; // Marks finished jobs COMPLETED many at a time
+    private final TypeThrottle throttle; // Rate limits and concurrency caps per type shared by all workers (worker.type-limits)
+    private final JobPayloadStore payloads; // Loads large payloads from job_payloads when a handler opens them
+    private final ConsumptionController consumption; // Prefetch size and pauses under backpressure or after errors
+    private final AttemptRecorder attempts; // Appends every attempt's outcome to job_attempts in the background
+
+    private final ExecutorService jobExecutor = Executors.newVirtualThreadPerTaskExecutor(); // One cheap virtual thread per running job
+    private final ExecutorService timedExecutor = Executors.newVirtualThreadPerTaskExecutor(); // Runs BLOCKING handlers with a timeout so the job's thread can give up on them
+    private final ExecutorService cpuExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().name("job-cpu-", 0).factory()); // Runs CPU_BOUND handlers, one platform thread per core
+    private final Semaphore runSlots; // Bounds how many jobs run at once (worker.concurrency), prefetched jobs wait here
+    private final ReentrantLock claimLock = new ReentrantLock(); // Guards claimed, a lock rather than synchronized so job virtual threads never pin
+    private final Condition claimFreed = claimLock.newCondition();
+    private int claimed; // Jobs claimed and not finished yet, running or prefetched, at most concurrency + the prefetch target
+    private final Map<String, Semaphore> typeSlots = new HashMap<>(); // Per-type limits from worker.type-concurrency, unlisted types have none
+    private final List<Thread> consumers = new ArrayList<>(); // Threads waiting on the queue for new jobs
+    private volatile boolean running = true; // Flipped to false on shutdown so consumers stop claiming
 
-    public RedisJobWorker(JobRepository jobRepository, RedisConnectionFactory redisConnectionFactory, StringRedisTemplate redisTemplate){
+    public RedisJobWorker(JobRepository jobRepository, JobQueue jobQueue, WorkerProperties properties, JobMetrics metrics,
+                          JobHandlerRegistry handlers, LeaseKeeper leases, JobStatusCache statusCache,
+                          CompletionBatcher completions, TypeThrottle throttle, JobPayloadStore payloads,
+                          ConsumptionController consumption, AttemptRecorder attempts){
         this.jobRepository = jobRepository;
-        this.redisConnectionFactory = redisConnectionFactory;
-        this.redisTemplate = redisTemplate;
+        this.jobQueue = jobQueue;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.handlers = handlers;
+        this.leases = leases;
+        this.statusCache = statusCache;
+        this.completions = completions;
+        this.throttle = throttle;
+        this.payloads = payloads;
+        this.consumption = consumption;
+        this.attempts = attempts;
+        this.runSlots = new Semaphore(Math.max(1, properties.getConcurrency()));
+        handlers.all().forEach((type, handler) -> { // Limits declared by the handlers first
+            if (handler.maxConcurrency() > 0) {
+                typeSlots.put(type, new Semaphore(handler.maxConcurrency()));
+            }
+        });
+        properties.getTypeConcurrency().forEach((type, limit) -> typeSlots.put(type, new Semaphore(Math.max(1, limit)))); // then worker.type-concurrency overrides them
     }
 
-    // This is the workers main loop
-    // It runs indefinitely, waiting for jobs to process
+    // Starts the consumer threads and returns, the JVM is kept alive by spring.main.keep-alive
     @Override
     public void run(String... args) throws Exception {
-        System.out.println("Worker running (blocking). Waiting for jobs on queue:jobs...");
-
-        byte[] queueKey = "queue:jobs".getBytes(StandardCharsets.UTF_8); // Key for the Redis job queue, low-level Redis operations use byte arrays
-                                                                         // UTF-8 encoding for converting strings to byte arrays
-        
-        while (true) { // Infinite loop to keep the worker running
-            try (RedisConnection connection = redisConnectionFactory.getConnection()) { // Open a Redis connection and automatically closes the connection safely
-                // Blocking pop operation
-                var result = connection.bLPop(30, queueKey); // Blocks until a job is available in the queue "queue:jobs"
-                                                           // 0 means it will wait indefinitely
-                                                           // Returns a list of byte arrays representing the popped job ID
-                if (result == null || result.size() < 2) continue; // Check if a job was retrieved
-                                                                   // BLPop returns a list with two elements: 
-                                                                   //   the key and the value usually returned as bytes, 
-                                                                   //   expecting size >= 2
-                                                                   // If no job was retrieved, continue to the next iteration of the loop
-                                                                   // In case redis returns null (no job) or the result size is less than 2, we skip processing
-                String jobId = new String(result.get(1), StandardCharsets.UTF_8); // Convert the job ID from bytes to string using UTF-8 encoding
-
-                int claimed = jobRepository.claimJob(jobId); // Try to claim the job atomically in the database
-                                                        // If another worker has already claimed it, claimed will be 0
-                if(claimed == 0){
-                    System.out.println("Job " + jobId + " was already claimed by another worker, skipping...");
-                    continue; // If the job was not claimed (another worker took it), skip processing
-                }
+        System.out.println("Worker running (" + properties.getConsumers() + " consumers, up to "
+                + properties.getConcurrency() + " jobs in flight, batches of " + properties.getBatchSize() + ", "
+                + properties.getQueueBackend() + " queue, handlers for " + handlers.all().keySet() + "). Waiting for jobs...");
 
-                // Lookup the job in PostgreSQL and process it
-                // if it does not exist, we just ignore it
-                jobRepository.findById(jobId).ifPresent(this::processJobClaimed);
+        for (int i = 0; i < properties.getConsumers(); i++) { // 0 leaves the worker idle, e.g. when benchmarks drive it directly
+            consumers.add(Thread.ofPlatform().name("job-consumer-" + i).start(this::consume));
+        }
+    }
+
+    // This is each consumer's main loop
+    // It waits until fewer jobs are claimed than it may hold, claims up to worker.batch-size jobs from the queue
+    // and hands every claimed job to the job executor, where it waits for a run slot if it was prefetched
+    // ConsumptionController decides how far ahead of the free slots it claims and how long it pauses between rounds
+    private void consume() {
+        while (running) { // Keep the consumer running until shutdown
+            if (!pause(consumption.beforeClaim())) return; // Only waits while Postgres or Redis is slow
+            int slots = acquireSlots(); // Number of jobs this round is allowed to claim
+            if (slots == 0) return; // Interrupted while waiting for a slot
+
+            int dispatched = 0; // How many slots were handed over to claimed jobs
+            try {
+                List<JobEntity> claimedJobs = jobQueue.claimBatch(slots, properties.getPollTimeout()); // Waits at most the poll timeout so shutdown is noticed quickly
+                consumption.succeeded();
+                for (JobEntity job : claimedJobs) {
+                    metrics.queueWait(job);
+                    Semaphore typeSlot = typeSlots.get(job.getType());
+                    if (typeSlot != null && !typeSlot.tryAcquire()) { // Its type is already at its limit, hand it back instead of running it
+                        jobExecutor.execute(() -> {
+                            try {
+                                deferJob(job, properties.getTypeLimitRetryDelay(), "deferred");
+                            } finally {
+                                releaseSlots(1);
+                            }
+                        });
+                    } else {
+                        leases.hold(job.getId()); // Heartbeat until the outcome is stored, also while it waits for a run slot
+                        jobExecutor.execute(() -> { // Run the job on its own virtual thread, the slots are released when it finishes
+                            boolean started = false;
+                            try {
+                                runSlots.acquire(); // Immediate unless the job was prefetched
+                                started = true;
+                                runThrottled(job);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt(); // Shutdown gave up on it, the reaper re-queues it once the lease runs out
+                            } finally {
+                                if (started) {
+                                    runSlots.release();
+                                }
+                                leases.release(job.getId());
+                                if (typeSlot != null) {
+                                    typeSlot.release();
+                                }
+                                releaseSlots(1);
+                            }
+                        });
+                    }
+                    dispatched++;
+                }
 
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Restore the interrupted status
+                return;
             } catch (Exception e) {
                 System.out.println("Worker Error: " + e.getMessage());
-                
-                // In case of an error, wait a bit before retrying so Redis does nto permanently crash
-                try {
-                    Thread.sleep(1000); // Sleep for a second before retrying in case of an error
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt(); // Restore the interrupted status
-                }
+
+                // Back off before claiming again, longer the more rounds in a row failed, so an outage does not become a retry storm
+                if (!pause(consumption.afterFailure())) return;
+            } finally {
+                releaseSlots(slots - dispatched); // Give back the slots that did not turn into claimed jobs
             }
         }
     }
 
+    // Blocks until fewer jobs are claimed than concurrency + prefetch, then takes the room there is, up to worker.batch-size
+    // Returns 0 if interrupted
+    private int acquireSlots() {
+        claimLock.lock();
+        try {
+            int limit = Math.max(1, properties.getConcurrency()) + consumption.prefetch();
+            while (claimed >= limit) {
+                claimFreed.await(); // Signalled whenever a job finishes, so we never claim more jobs than we can run or hold
+                limit = Math.max(1, properties.getConcurrency()) + consumption.prefetch();
+            }
+            int slots = Math.min(Math.max(1, properties.getBatchSize()), limit - claimed);
+            claimed += slots;
+            return slots;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore the interrupted status
+            return 0;
+        } finally {
+            claimLock.unlock();
+        }
+    }
 
-    // Process a job by updating its status and simulating work
-    public void processJobClaimed(JobEntity job){
-        try{
-            
-            
-            job.setStatus(JobStatus.IN_PROGRESS); // Update job status to RUNNING
-            jobRepository.save(job); // Save the updated job status to the database
-
-            System.out.println("Processing job: " +  job.getId() + " -> " + job.getStatus()); // Log the processing job ID
+    private void releaseSlots(int slots) {
+        if (slots <= 0) {
+            return;
+        }
+        claimLock.lock();
+        try {
+            claimed -= slots;
+            claimFreed.signalAll();
+        } finally {
+            claimLock.unlock();
+        }
+    }
 
-            if(job.getPayload() != null && job.getPayload().contains("FAIL_ALWAYS")){
-                throw new RuntimeException("Simulated job failure for job " + job.getId());
+    // Sleeps for the pause, cut short by shutdown, false if interrupted
+    private boolean pause(Duration pause) {
+        long until = System.nanoTime() + pause.toNanos();
+        try {
+            while (running && System.nanoTime() < until) {
+                Thread.sleep(Math.max(1, Math.min(100, (until - System.nanoTime()) / 1_000_000)));
             }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore the interrupted status
+            return false;
+        }
+    }
 
-            if(job.getPayload() != null && job.getPayload().contains("FAIL_TIMES=")){
-                int n = Integer.parseInt(job.getPayload().substring("FAIL_TIMES=".length()).trim());
-                if(job.getAttempts() < n){
-                    throw new RuntimeException("Simulated job attempt for job " + job.getId() + ", attempt " + (job.getAttempts() + 1)); 
-                }
+    // Graceful drain on shutdown
+    // Stop claiming new jobs, then give in-flight jobs up to worker.shutdown-timeout to finish
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        System.out.println("Worker shutting down, draining in-flight jobs...");
+
+        for (Thread consumer : consumers) {
+            consumer.join(properties.getPollTimeout().plusSeconds(1).toMillis()); // Consumers exit once their current poll times out
+        }
+
+        jobExecutor.shutdown(); // Let running jobs finish but accept no new ones
+        if (!jobExecutor.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            System.out.println("Worker shutdown timed out, interrupting remaining jobs");
+            jobExecutor.shutdownNow();
+        }
+        timedExecutor.shutdownNow(); // Nothing is waiting on these any more
+        cpuExecutor.shutdownNow();
+    }
+
+
+    // Run the job once its type's cluster-wide limits allow it, otherwise defer it until the next free slot
+    // The Redis check runs here on the job's thread, not on the consumer thread, so a busy type does not slow claiming down
+    private void runThrottled(JobEntity job) {
+        long wait = throttle.tryAcquire(job);
+        if (wait > 0) {
+            deferJob(job, Duration.ofMillis(wait), "throttled");
+            return;
+        }
+        try {
+            processJobClaimed(job);
+        } finally {
+            throttle.release(job);
+        }
+    }
+
+    // Put a job whose type is at one of its limits back in the queue until delay has passed
+    // Does not count as an attempt, the job never ran
+    private void deferJob(JobEntity job, Duration delay, String outcome) {
+        try {
+            Instant retryAt = Instant.now().plus(delay);
+            jobQueue.scheduleRetry(job, retryAt.toEpochMilli()); // Queued first, see processJobClaimed
+            int updated = metrics.db("defer", () -> jobRepository.deferJob(job.getId(), job.getAttempts(), properties.getId(), retryAt));
+            jobQueue.acknowledge(job);
+            if (updated == 0) {
+                System.out.println("Job " + job.getId() + " could not be deferred, its lease was lost");
+                return;
             }
+            job.setStatus(JobStatus.PENDING);
+            job.setAvailableAt(retryAt);
+            statusCache.write(job);
+            metrics.processed(job, outcome);
+        } catch (Exception e) {
+            System.out.println("Could not defer job " + job.getId() + ": " + e.getMessage()); // Left IN_PROGRESS, the lease reaper picks it up
+        }
+    }
+
+    // Process a claimed job by running the handler for its type and storing the outcome
+    // The claim already flipped the row to IN_PROGRESS, every outcome is one guarded UPDATE (see JobRepository),
+    // the entity itself is never saved back
+    // Retries go to Redis before the UPDATE: if the UPDATE fails the job stays IN_PROGRESS
+    // and the lease reaper re-queues it, the early Redis entry only points at a job that is not PENDING yet and is skipped
+    // Dead letters go to deadletter:jobs only after failJob matched, a lost lease must not leave a DLQ entry
+    // for a job that is not FAILED (the list only feeds the depth gauge, GET /dlq reads the FAILED rows)
+    public void processJobClaimed(JobEntity job){
+        long start = System.nanoTime(); // Execution time covers the attempt until its outcome is stored
+        Instant startedAt = Instant.now(); // Wall clock start for the attempt history
+        JobHandler handler = handlers.find(job.getType());
+        if (handler == null) { // No handler and worker.simulate-unhandled-types is off, retrying here would not help
+            unhandled(job, startedAt, start);
+            return;
+        }
+        int claimedAttempts = job.getAttempts(); // Guards every transition below
+        int attempt = claimedAttempts + 1; // This attempt's number in job_attempts
+        try{
+            statusCache.write(job); // IN_PROGRESS since the claim
 
-            Thread.sleep(1500); // Simulate job processing (doing work) time (1.5 seconds)
+            System.out.println("Processing job: " +  job.getId() + " -> " + job.getStatus()); // Log the processing job ID
+
+            String result = runHandler(handler, job); // Throws if the attempt failed or timed out, null if the handler set no result
 
-            int updated = jobRepository.completeJob(job.getId()); // Update job status to COMPLETED in the database
-            if(updated == 0){
-                System.out.println("Job " + job.getId() + " could not be marked as COMPLETED, it may have been modified concurrently.");
+            boolean completed = completions.complete(job, result); // Marked COMPLETED together with other finished jobs, in one UPDATE
+            jobQueue.acknowledge(job); // Outcome stored, the queue can forget the message
+            if(!completed){
+                System.out.println("Job " + job.getId() + " could not be marked as COMPLETED, its lease was lost.");
+                finished(job, attempt, startedAt, start, "lease_lost", null);
+                return;
             }
+            job.setStatus(JobStatus.COMPLETED);
+            statusCache.write(job);
+            finished(job, attempt, startedAt, start, "completed", null);
 
             System.out.println("Processed job: " + job.getId() + "-> COMPLETED"); // Log the processed job ID
+        } catch (InterruptedException e) {
+            interrupted(job, attempt, startedAt, start, e);
         } catch (Exception e){
+            if (Thread.currentThread().isInterrupted()) { // A handler that wrapped the InterruptedException, still shutdown's doing
+                interrupted(job, attempt, startedAt, start, e);
+                return;
+            }
+            String error = describe(e);
             job.incrementAttempts();
 
             if(job.getAttempts() >= MAX_RETRIES){
-                job.setStatus(JobStatus.FAILED); // Update job status to FAILED in case of an error
-                jobRepository.save(job); // Save the updated job status to the database
-
-                redisTemplate.opsForList().rightPush(DEAD_LETTER_KEY, job.getId()); // Push failed job ID into the DLQ
-                System.out.println("Processed job: " + job.getId() + "-> FAILED (max attempts exceeded) (sent to DLQ)"); // Log the failed job ID
+                int updated = metrics.db("fail", () -> jobRepository.failJob(job.getId(), claimedAttempts, properties.getId())); // Update job status to FAILED
+                jobQueue.acknowledge(job);
+                if (updated == 0) {
+                    System.out.println("Job " + job.getId() + " could not be marked as FAILED, its lease was lost.");
+                    finished(job, attempt, startedAt, start, "lease_lost", error);
+                    return;
+                }
+                jobQueue.deadLetter(job); // Push failed job ID into the DLQ
+                job.setStatus(JobStatus.FAILED);
+                statusCache.write(job);
+                finished(job, attempt, startedAt, start, "dead_lettered", error);
+                System.out.println("Processed job: " + job.getId() + "-> FAILED (max attempts exceeded) (sent to DLQ): " + error); // Log the failed job ID
                 return;
             }
             
@@ -127,16 +336,97 @@ public class RedisJobWorker implements CommandLineRunner{ // Tells spring to run
                                                                                                               // BASE_BACKOFF_MILLIS * long(2^(attempts-1)), caps at MAX_BACKOFF_MILLIS
             long retryTime = System.currentTimeMillis() + delay; // Calculate the retry time based on the current time and the delay
                                                                  // Job is retried 'delay' milliseconds from now (current time)
+            Instant retryAt = Instant.ofEpochMilli(retryTime);
 
-            job.setStatus(JobStatus.PENDING); // Reset status to pending for retry
-            jobRepository.save(job); // Save the updated job status to the database
-
-            redisTemplate.opsForZSet().add(RETRY_ZSET, job.getId(), retryTime); // Add job ID to the retry sorted set with the calculated retry time as the score
+            jobQueue.scheduleRetry(job, retryTime); // Make the job claimable again at the calculated retry time
+            int updated = metrics.db("retry", () -> jobRepository.retryJob(job.getId(), claimedAttempts, properties.getId(), retryAt)); // Back to PENDING, not claimable before the retry time
+            jobQueue.acknowledge(job); // The retry is a new message, this one is done
+            if (updated == 0) {
+                System.out.println("Job " + job.getId() + " could not be scheduled for retry, its lease was lost.");
+                finished(job, attempt, startedAt, start, "lease_lost", error);
+                return;
+            }
+            job.setStatus(JobStatus.PENDING);
+            job.setAvailableAt(retryAt);
+            statusCache.write(job);
+            finished(job, attempt, startedAt, start, "retried", error);
 
-            System.out.println("Processed job: " + job.getId() + " -> FAILED (attempt " + job.getAttempts() + "), retrying in " + delay + "ms"); // Log the retry information
+            System.out.println("Processed job: " + job.getId() + " -> FAILED (attempt " + job.getAttempts() + "), retrying in " + delay + "ms: " + error); // Log the retry information
 
             
         }
     }
 
-}
\ No newline at end of file
+    // Shutdown interrupted the attempt: not the job's fault, so the row is left IN_PROGRESS and the queue entry unacknowledged
+    // The lease runs out and the reaper re-queues the job (or another consumer reclaims the stream entry)
+    private void interrupted(JobEntity job, int attempt, Instant startedAt, long start, Exception e) {
+        Thread.currentThread().interrupt(); // Keep the flag for whoever runs this thread
+        System.out.println("Job " + job.getId() + " was interrupted by shutdown, left for the lease reaper");
+        finished(job, attempt, startedAt, start, "interrupted", describe(e));
+    }
+
+    // Execution metrics and the job_attempts row for one finished attempt
+    private void finished(JobEntity job, int attempt, Instant startedAt, long start, String outcome, String error) {
+        metrics.executed(job, start, outcome);
+        attempts.record(job, attempt, startedAt, start, outcome, error);
+    }
+
+    // What job_attempts and the logs keep of a failure
+    private static String describe(Exception e) {
+        return e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    // Runs one attempt on the executor the handler asked for and waits for it, returns the result the handler set
+    // A plain BLOCKING handler runs right here on the job's virtual thread, no hand-off needed
+    private String runHandler(JobHandler handler, JobEntity job) throws Exception {
+        JobContext context = JobContext.of(job, payloads);
+        Duration timeout = handler.timeout();
+        if (handler.executionMode() == ExecutionMode.BLOCKING && timeout == null) {
+            handler.handle(context);
+            return context.output().result();
+        }
+
+        ExecutorService executor = handler.executionMode() == ExecutionMode.CPU_BOUND ? cpuExecutor : timedExecutor;
+        Future<?> attempt = executor.submit(() -> {
+            handler.handle(context);
+            return null;
+        });
+        try {
+            if (timeout == null) {
+                attempt.get();
+            } else {
+                attempt.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            attempt.cancel(true); // Interrupt the handler, the attempt counts as failed
+            throw new TimeoutException("Job " + job.getId() + " timed out after " + timeout.toMillis() + "ms");
+        } catch (InterruptedException e) {
+            attempt.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause; // Surface the handler's own exception
+            }
+            throw e;
+        }
+        return context.output().result(); // Written by the handler's thread, visible once get() returned
+    }
+
+    // Dead-letter a job of a type this worker has no handler for
+    private void unhandled(JobEntity job, Instant startedAt, long start) {
+        System.out.println("Processed job: " + job.getId() + " -> FAILED (no handler for type " + job.getType() + ") (sent to DLQ)");
+        int updated = metrics.db("fail", () -> jobRepository.failJob(job.getId(), job.getAttempts(), properties.getId()));
+        jobQueue.acknowledge(job);
+        String error = "No handler for type " + job.getType();
+        if (updated == 0) {
+            finished(job, job.getAttempts() + 1, startedAt, start, "lease_lost", error);
+            return;
+        }
+        jobQueue.deadLetter(job);
+        job.incrementAttempts();
+        job.setStatus(JobStatus.FAILED);
+        statusCache.write(job);
+        finished(job, job.getAttempts(), startedAt, start, "unhandled", error);
+    }
+
+}
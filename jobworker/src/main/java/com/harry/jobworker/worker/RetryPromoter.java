@@ -1,44 +1,64 @@
 package com.harry.jobworker.worker;
 
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.queue.JobQueue;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.data.redis.core.StringRedisTemplate;
 
-import java.util.Set;
+import java.time.Instant;
 
 
+// Moves due retries back onto the main job queue
+// Scheduled jobs (runAt / delayMs) are ZADDed to the same retry ZSETs by jobservice's outbox relay, so they are promoted the same way
+// Instead of a fixed rate, each run schedules the next one for when the earliest waiting retry comes due,
+// clamped between worker.retry-promotion-min-interval and worker.retry-promotion-max-interval
 @Component
 public class RetryPromoter {
-    private static final String QUEUE_KEY = "queue:jobs"; // Key for the Redis job queue
-    private static final String RETRY_ZSET = "retry:jobs"; // Key for the Redis sorted set for retrying jobs
-    private final StringRedisTemplate redisTemplate; // Template for Redis operations
-    
-    public RetryPromoter(StringRedisTemplate redisTemplate) {
-        this.redisTemplate = redisTemplate;
-    }
+    private final JobQueue jobQueue; // The active queue backend knows where its retries live
+    private final TaskScheduler taskScheduler; // Spring's scheduler, enabled by @EnableScheduling
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
 
-    // Every 1 second, add ready-to-retry jobs back to the main job queue
-    @Scheduled(fixedRate = 1000)
-    public void promoteRetries() {
-        long now = System.currentTimeMillis(); // Current time in milliseconds
+    public RetryPromoter(JobQueue jobQueue, TaskScheduler taskScheduler, WorkerProperties properties, JobMetrics metrics) {
+        this.jobQueue = jobQueue;
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
 
-        // Get job IDs from the retry sorted set with scores (timestamps) less than or equal to now
-        Set<String> readyJobIds = redisTemplate.opsForZSet().rangeByScore(RETRY_ZSET, 0, now, 0, 50); // Limit to 50 jobs at a time
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.schedule(this::promoteRetries, Instant.now());
+    }
 
-        if (readyJobIds == null || readyJobIds.isEmpty()) {
-            return; // No jobs ready for retry
+    // Promote everything that is due, then schedule the next run
+    public void promoteRetries() {
+        long nextDueAt = -1;
+        long start = System.nanoTime();
+        try {
+            nextDueAt = jobQueue.promoteDueRetries();
+            metrics.promotion(start);
+        } catch (Exception e) {
+            System.out.println("Retry promotion error: " + e.getMessage());
+        } finally {
+            scheduleNext(nextDueAt);
         }
+    }
 
-        for (String jobId : readyJobIds) {
-            // Remove the job ID from the retry sorted set
-            Long removed = redisTemplate.opsForZSet().remove(RETRY_ZSET, jobId);
-            if (removed != null && removed > 0) {
-                // Push the job ID back onto the main job queue
-                redisTemplate.opsForList().rightPush(QUEUE_KEY, jobId);
-                System.out.println("Promoted job " + jobId + " back to the main queue for retry.");
-            }
-        }
+    private void scheduleNext(long nextDueAt) {
+        long now = System.currentTimeMillis();
+        long minDelay = properties.getRetryPromotionMinInterval().toMillis();
+        long maxDelay = properties.getRetryPromotionMaxInterval().toMillis(); // Also bounds how late a retry added after this run is noticed
+        long delay = nextDueAt < 0 ? maxDelay : Math.max(minDelay, Math.min(maxDelay, nextDueAt - now));
 
+        try {
+            taskScheduler.schedule(this::promoteRetries, Instant.ofEpochMilli(now + delay));
+        } catch (TaskRejectedException e) {
+            // Scheduler is shutting down
+        }
     }
 
 
@@ -0,0 +1,158 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.queue.QueueKeys;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Cluster-wide limits per job type from worker.type-limits, shared by every worker through Redis
+//   throttle:rate:{<type>}    (HASH) token bucket: tokens, refilled at rate per second up to burst
+//   throttle:running:{<type>} (ZSET) IDs of the jobs of that type running anywhere, scored by when their slot expires
+// Before a limited job runs, one script call takes a token and a running slot, or says how long until one frees up:
+// the token bucket knows exactly when the next token arrives, a full running set is retried after worker.type-limit-retry-delay
+// Throttled jobs are deferred without using an attempt. Slots are renewed with the lease heartbeat
+// and expire with it, so a dead worker's slots free up on their own
+
+@Component
+public class TypeThrottle {
+    // KEYS[1] throttle:rate:{<type>}, KEYS[2] throttle:running:{<type>}, hash tagged by type so Redis Cluster serves both from one slot
+    // ARGV[1] rate per second (0 = none), ARGV[2] burst, ARGV[3] max concurrency (0 = none), ARGV[4] job ID,
+    // ARGV[5] slot lease millis, ARGV[6] millis to wait when every slot is taken
+    // Returns 0 if the job may run now, otherwise how many millis to wait
+    // Uses the Redis clock so every worker sees the same bucket
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local rate = tonumber(ARGV[1])
+            local burst = tonumber(ARGV[2])
+            local maxConcurrency = tonumber(ARGV[3])
+
+            if maxConcurrency > 0 then
+                redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', now)
+                if not redis.call('ZSCORE', KEYS[2], ARGV[4]) and redis.call('ZCARD', KEYS[2]) >= maxConcurrency then
+                    return tonumber(ARGV[6])
+                end
+            end
+
+            if rate > 0 then
+                local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+                local tokens = tonumber(bucket[1]) or burst
+                local ts = tonumber(bucket[2]) or now
+                tokens = math.min(burst, tokens + math.max(0, now - ts) * rate / 1000)
+                local wait = 0
+                if tokens < 1 then
+                    wait = math.ceil((1 - tokens) * 1000 / rate)
+                else
+                    tokens = tokens - 1
+                end
+                redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+                redis.call('PEXPIRE', KEYS[1], math.ceil(burst * 1000 / rate) + 1000)
+                if wait > 0 then
+                    return wait
+                end
+            end
+
+            if maxConcurrency > 0 then
+                redis.call('ZADD', KEYS[2], now + tonumber(ARGV[5]), ARGV[4])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final TaskScheduler taskScheduler;
+    private final WorkerProperties properties;
+    private final JobMetrics metrics;
+
+    private final Map<String, String> running = new ConcurrentHashMap<>(); // Job ID -> type, jobs here holding a running slot
+
+    public TypeThrottle(StringRedisTemplate redisTemplate, TaskScheduler taskScheduler, WorkerProperties properties, JobMetrics metrics) {
+        this.redisTemplate = redisTemplate;
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.getTypeLimits().isEmpty()) {
+            taskScheduler.scheduleWithFixedDelay(this::renew, properties.getLeaseRenewInterval());
+        }
+    }
+
+    // 0 if the job may run now (its running slot is then held until release), otherwise the millis until it should try again
+    // Types without a limit never touch Redis, if Redis fails the job runs rather than stalling the queue
+    public long tryAcquire(JobEntity job) {
+        WorkerProperties.TypeLimit limit = properties.getTypeLimits().get(job.getType());
+        if (limit == null) {
+            return 0;
+        }
+        try {
+            Long wait = metrics.redis("throttle", () -> redisTemplate.execute(ACQUIRE_SCRIPT,
+                    List.of(QueueKeys.throttleRate(job.getType()), QueueKeys.throttleRunning(job.getType())),
+                    String.valueOf(limit.getRate()),
+                    String.valueOf(Math.max(1, limit.getBurst())),
+                    String.valueOf(limit.getMaxConcurrency()),
+                    job.getId(),
+                    String.valueOf(properties.getLeaseDuration().toMillis()),
+                    String.valueOf(properties.getTypeLimitRetryDelay().toMillis())));
+            if (wait != null && wait > 0) {
+                // Spread jobs throttled together over the next token interval instead of sending them all back at once
+                long spread = limit.getRate() > 0 ? (long) Math.ceil(1000 / limit.getRate()) : wait;
+                return wait + ThreadLocalRandom.current().nextLong(Math.max(1, spread));
+            }
+            if (limit.getMaxConcurrency() > 0) {
+                running.put(job.getId(), job.getType());
+            }
+            return 0;
+        } catch (Exception e) {
+            System.out.println("Throttle check failed for job " + job.getId() + ", running it anyway: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Give the job's running slot back, a no-op for jobs that did not take one
+    public void release(JobEntity job) {
+        String type = running.remove(job.getId());
+        if (type == null) {
+            return;
+        }
+        try {
+            metrics.redis("zrem", () -> redisTemplate.opsForZSet().remove(QueueKeys.throttleRunning(type), job.getId()));
+        } catch (Exception e) {
+            System.out.println("Could not release throttle slot of job " + job.getId() + ": " + e.getMessage()); // Expires with the lease
+        }
+    }
+
+    // Push out the expiry of every slot held here, in one pipeline
+    // ZADD XX only updates members that are still there, a slot that already expired is not brought back
+    public void renew() {
+        if (running.isEmpty()) {
+            return;
+        }
+        double expiresAt = System.currentTimeMillis() + properties.getLeaseDuration().toMillis();
+        try {
+            metrics.redis("throttle_renew", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                running.forEach((jobId, type) -> redis.zAdd(QueueKeys.throttleRunning(type), expiresAt, jobId, ZAddArgs.empty().ifExists()));
+                return null;
+            }));
+        } catch (Exception e) {
+            System.out.println("Throttle slot renewal error: " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.jobs.JobPriority;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+// Tunables for the worker, bound from the "worker.*" keys in application.yml
+// Every field has a default so the worker runs without any extra configuration
+
+@ConfigurationProperties(prefix = "worker")
+public class WorkerProperties {
+
+    private String id = defaultId(); // Identifies this worker instance, used as the stream consumer name
+    private String queueBackend = "redis"; // "redis" (queue:jobs list), "stream" (stream:jobs consumer group) or "postgres" (claim straight from the jobs table)
+    private int queueShards = 1; // Shards every Redis lane is split into, must match queue.shards on jobservice, 1 keeps the unsharded keys
+    private Duration stealInterval = Duration.ofSeconds(1); // With several shards, how long an idle consumer waits on its home shard before checking the others again
+    private int consumers = 1; // Number of threads waiting on the queue for new jobs, 0 means this worker does not consume
+    private int concurrency = 16; // Maximum number of jobs being processed at the same time
+    private int batchSize = 10; // Maximum number of jobs claimed per round trip
+    private Duration pollTimeout = Duration.ofSeconds(5); // How long one poll (BLPOP or LISTEN) waits before looping again
+    private Duration minPollWait = Duration.ofMillis(100); // postgres backend: shortest wait after a claim that found nothing, NOTIFY still wakes it at once
+    private int maxPrefetch = 10; // Most jobs claimed ahead of free slots, waiting on this worker with their lease held, 0 disables prefetch
+    private Duration backpressureLatency = Duration.ofMillis(250); // Average Postgres or Redis call latency above which consumers back off, 0 disables
+    private Duration backoffBase = Duration.ofMillis(100); // First pause after a failed claim or while the stores are slow, doubles every round
+    private Duration backoffMax = Duration.ofSeconds(10); // Longest such pause, each pause is a random fraction of the current ceiling
+    private Duration shutdownTimeout = Duration.ofSeconds(30); // How long shutdown waits for in-flight jobs to finish
+    private int retryPromotionBatchSize = 1000; // Due retries moved per promotion script call
+    private Duration retryPromotionMinInterval = Duration.ofMillis(50); // Promotion never runs more often than this
+    private Duration retryPromotionMaxInterval = Duration.ofSeconds(1); // or less often than this
+    private Duration streamReclaimIdle = Duration.ofMinutes(5); // Stream entries unacknowledged this long are taken over from their consumer
+    private Duration streamReclaimInterval = Duration.ofSeconds(30); // How often XAUTOCLAIM looks for such entries
+    private Map<JobPriority, Integer> priorityWeights = defaultPriorityWeights(); // Share of each claim batch given to each priority lane
+    private Map<String, Integer> typeConcurrency = new HashMap<>(); // Job type -> max jobs of that type running at once on this worker, unlisted types are only bound by concurrency
+    private Duration typeLimitRetryDelay = Duration.ofMillis(250); // How long a job over its type's limit waits before it can be claimed again
+    private Map<String, TypeLimit> typeLimits = new HashMap<>(); // Job type -> rate limit and concurrency cap across all workers, enforced through Redis
+    private Duration simulatedWork = Duration.ofMillis(1500); // How long a simulated job "works", the load test sets it to 0
+    private boolean simulateUnhandledTypes = true; // Jobs whose type has no JobHandler run the simulated handler, false sends them straight to the DLQ
+    private Duration leaseDuration = Duration.ofSeconds(30); // How long a claim holds a job without a heartbeat before the reaper may re-queue it
+    private Duration leaseRenewInterval = Duration.ofSeconds(10); // How often the leases of running jobs are renewed, well under lease-duration
+    private Duration leaseReapInterval = Duration.ofSeconds(15); // How often this worker looks for expired leases
+    private int leaseReapBatchSize = 500; // Expired jobs re-queued per reaper statement
+    private Duration completionFlushInterval = Duration.ofMillis(5); // How long completions are collected before one UPDATE marks them all COMPLETED
+    private int completionBatchSize = 500; // A batch is flushed early once it has this many completions
+    private Duration resultTtl = Duration.ofDays(7); // How long job_results rows are kept after the job completed
+    private int resultCompressionThreshold = 1024; // Results longer than this many bytes are stored deflate compressed
+    private Duration attemptFlushInterval = Duration.ofMillis(100); // How long attempts are collected before one INSERT appends them to job_attempts
+    private int attemptBatchSize = 500; // A batch of attempts is written early once it has this many rows
+    private Duration statusCacheTtl = Duration.ofMinutes(10); // Expiry of the job:status:<id> hashes written for GET /jobs/{id}, 0 disables the write-through (events are still published)
+    private Duration metricsDepthInterval = Duration.ofSeconds(5); // How often queue, retry and DLQ depths are polled for the jobs.queue.depth gauges
+
+    // Cluster-wide limits for one job type, e.g. worker.type-limits.[EMAIL].rate=50
+    public static class TypeLimit {
+        private double rate; // Jobs started per second across all workers, 0 means no rate limit
+        private int burst = 1; // Jobs that may start back to back after an idle period
+        private int maxConcurrency; // Jobs running at once across all workers, 0 means no cap
+
+        public double getRate() {
+            return rate;
+        }
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+        public int getBurst() {
+            return burst;
+        }
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
+
+    // Container hostname (or "worker") plus the process id
+    private static String defaultId() {
+        return System.getenv().getOrDefault("HOSTNAME", "worker") + "-" + ProcessHandle.current().pid();
+    }
+
+    // HIGH gets 8 of every 12 slots, NORMAL 3 and LOW 1 while all three lanes have work
+    private static Map<JobPriority, Integer> defaultPriorityWeights() {
+        Map<JobPriority, Integer> weights = new EnumMap<>(JobPriority.class);
+        weights.put(JobPriority.HIGH, 8);
+        weights.put(JobPriority.NORMAL, 3);
+        weights.put(JobPriority.LOW, 1);
+        return weights;
+    }
+
+    public String getId() {
+        return id;
+    }
+    public void setId(String id) {
+        this.id = id;
+    }
+    public String getQueueBackend() {
+        return queueBackend;
+    }
+    public void setQueueBackend(String queueBackend) {
+        this.queueBackend = queueBackend;
+    }
+    public int getQueueShards() {
+        return queueShards;
+    }
+    public void setQueueShards(int queueShards) {
+        this.queueShards = queueShards;
+    }
+    public Duration getStealInterval() {
+        return stealInterval;
+    }
+    public void setStealInterval(Duration stealInterval) {
+        this.stealInterval = stealInterval;
+    }
+    public int getConsumers() {
+        return consumers;
+    }
+    public void setConsumers(int consumers) {
+        this.consumers = consumers;
+    }
+    public int getConcurrency() {
+        return concurrency;
+    }
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    public int getBatchSize() {
+        return batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    public Duration getPollTimeout() {
+        return pollTimeout;
+    }
+    public void setPollTimeout(Duration pollTimeout) {
+        this.pollTimeout = pollTimeout;
+    }
+    public Duration getMinPollWait() {
+        return minPollWait;
+    }
+    public void setMinPollWait(Duration minPollWait) {
+        this.minPollWait = minPollWait;
+    }
+    public int getMaxPrefetch() {
+        return maxPrefetch;
+    }
+    public void setMaxPrefetch(int maxPrefetch) {
+        this.maxPrefetch = maxPrefetch;
+    }
+    public Duration getBackpressureLatency() {
+        return backpressureLatency;
+    }
+    public void setBackpressureLatency(Duration backpressureLatency) {
+        this.backpressureLatency = backpressureLatency;
+    }
+    public Duration getBackoffBase() {
+        return backoffBase;
+    }
+    public void setBackoffBase(Duration backoffBase) {
+        this.backoffBase = backoffBase;
+    }
+    public Duration getBackoffMax() {
+        return backoffMax;
+    }
+    public void setBackoffMax(Duration backoffMax) {
+        this.backoffMax = backoffMax;
+    }
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+    public void setShutdownTimeout(Duration shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+    public int getRetryPromotionBatchSize() {
+        return retryPromotionBatchSize;
+    }
+    public void setRetryPromotionBatchSize(int retryPromotionBatchSize) {
+        this.retryPromotionBatchSize = retryPromotionBatchSize;
+    }
+    public Duration getRetryPromotionMinInterval() {
+        return retryPromotionMinInterval;
+    }
+    public void setRetryPromotionMinInterval(Duration retryPromotionMinInterval) {
+        this.retryPromotionMinInterval = retryPromotionMinInterval;
+    }
+    public Duration getRetryPromotionMaxInterval() {
+        return retryPromotionMaxInterval;
+    }
+    public void setRetryPromotionMaxInterval(Duration retryPromotionMaxInterval) {
+        this.retryPromotionMaxInterval = retryPromotionMaxInterval;
+    }
+    public Duration getStreamReclaimIdle() {
+        return streamReclaimIdle;
+    }
+    public void setStreamReclaimIdle(Duration streamReclaimIdle) {
+        this.streamReclaimIdle = streamReclaimIdle;
+    }
+    public Duration getStreamReclaimInterval() {
+        return streamReclaimInterval;
+    }
+    public void setStreamReclaimInterval(Duration streamReclaimInterval) {
+        this.streamReclaimInterval = streamReclaimInterval;
+    }
+    public Map<JobPriority, Integer> getPriorityWeights() {
+        return priorityWeights;
+    }
+    public void setPriorityWeights(Map<JobPriority, Integer> priorityWeights) {
+        this.priorityWeights = priorityWeights;
+    }
+    public Map<String, Integer> getTypeConcurrency() {
+        return typeConcurrency;
+    }
+    public void setTypeConcurrency(Map<String, Integer> typeConcurrency) {
+        this.typeConcurrency = typeConcurrency;
+    }
+    public Duration getTypeLimitRetryDelay() {
+        return typeLimitRetryDelay;
+    }
+    public void setTypeLimitRetryDelay(Duration typeLimitRetryDelay) {
+        this.typeLimitRetryDelay = typeLimitRetryDelay;
+    }
+    public Map<String, TypeLimit> getTypeLimits() {
+        return typeLimits;
+    }
+    public void setTypeLimits(Map<String, TypeLimit> typeLimits) {
+        this.typeLimits = typeLimits;
+    }
+    public Duration getSimulatedWork() {
+        return simulatedWork;
+    }
+    public void setSimulatedWork(Duration simulatedWork) {
+        this.simulatedWork = simulatedWork;
+    }
+    public boolean isSimulateUnhandledTypes() {
+        return simulateUnhandledTypes;
+    }
+    public void setSimulateUnhandledTypes(boolean simulateUnhandledTypes) {
+        this.simulateUnhandledTypes = simulateUnhandledTypes;
+    }
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+    public Duration getLeaseRenewInterval() {
+        return leaseRenewInterval;
+    }
+    public void setLeaseRenewInterval(Duration leaseRenewInterval) {
+        this.leaseRenewInterval = leaseRenewInterval;
+    }
+    public Duration getLeaseReapInterval() {
+        return leaseReapInterval;
+    }
+    public void setLeaseReapInterval(Duration leaseReapInterval) {
+        this.leaseReapInterval = leaseReapInterval;
+    }
+    public int getLeaseReapBatchSize() {
+        return leaseReapBatchSize;
+    }
+    public void setLeaseReapBatchSize(int leaseReapBatchSize) {
+        this.leaseReapBatchSize = leaseReapBatchSize;
+    }
+    public Duration getCompletionFlushInterval() {
+        return completionFlushInterval;
+    }
+    public void setCompletionFlushInterval(Duration completionFlushInterval) {
+        this.completionFlushInterval = completionFlushInterval;
+    }
+    public int getCompletionBatchSize() {
+        return completionBatchSize;
+    }
+    public void setCompletionBatchSize(int completionBatchSize) {
+        this.completionBatchSize = completionBatchSize;
+    }
+    public Duration getResultTtl() {
+        return resultTtl;
+    }
+    public void setResultTtl(Duration resultTtl) {
+        this.resultTtl = resultTtl;
+    }
+    public int getResultCompressionThreshold() {
+        return resultCompressionThreshold;
+    }
+    public void setResultCompressionThreshold(int resultCompressionThreshold) {
+        this.resultCompressionThreshold = resultCompressionThreshold;
+    }
+    public Duration getAttemptFlushInterval() {
+        return attemptFlushInterval;
+    }
+    public void setAttemptFlushInterval(Duration attemptFlushInterval) {
+        this.attemptFlushInterval = attemptFlushInterval;
+    }
+    public int getAttemptBatchSize() {
+        return attemptBatchSize;
+    }
+    public void setAttemptBatchSize(int attemptBatchSize) {
+        this.attemptBatchSize = attemptBatchSize;
+    }
+    public Duration getStatusCacheTtl() {
+        return statusCacheTtl;
+    }
+    public void setStatusCacheTtl(Duration statusCacheTtl) {
+        this.statusCacheTtl = statusCacheTtl;
+    }
+    public Duration getMetricsDepthInterval() {
+        return metricsDepthInterval;
+    }
+    public void setMetricsDepthInterval(Duration metricsDepthInterval) {
+        this.metricsDepthInterval = metricsDepthInterval;
+    }
+
+}
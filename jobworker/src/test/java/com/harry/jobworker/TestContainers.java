@@ -0,0 +1,58 @@
+package com.harry.jobworker;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import javax.sql.DataSource;
+
+// Throwaway Postgres and Redis for the tests that need the real SQL and Lua, each started once per JVM on first use
+// The schema belongs to jobservice, so its Flyway migrations are applied straight from the sibling module
+// (tests run from the jobworker directory)
+
+public final class TestContainers {
+    private static final String DB = "jobdb";
+    private static final String USER = "jobuser";
+    private static final String PASSWORD = "jobpass";
+    private static final String MIGRATIONS = "filesystem:../jobservice/src/main/resources/db/migration";
+
+    private static DataSource dataSource;
+    private static StringRedisTemplate redisTemplate;
+
+    private TestContainers() {
+    }
+
+    public static synchronized DataSource postgres() {
+        if (dataSource == null) {
+            GenericContainer<?> postgres = new GenericContainer<>("postgres:16")
+                    .withEnv("POSTGRES_DB", DB)
+                    .withEnv("POSTGRES_USER", USER)
+                    .withEnv("POSTGRES_PASSWORD", PASSWORD)
+                    .withExposedPorts(5432)
+                    .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*", 2)); // The first one is the init run
+            postgres.start();
+            dataSource = new DriverManagerDataSource(
+                    "jdbc:postgresql://" + postgres.getHost() + ":" + postgres.getMappedPort(5432) + "/" + DB, USER, PASSWORD);
+            Flyway.configure().dataSource(dataSource).locations(MIGRATIONS).load().migrate();
+        }
+        return dataSource;
+    }
+
+    public static synchronized StringRedisTemplate redis() {
+        if (redisTemplate == null) {
+            GenericContainer<?> redis = new GenericContainer<>("redis:7")
+                    .withExposedPorts(6379)
+                    .waitingFor(Wait.forLogMessage(".*Ready to accept connections.*", 1));
+            redis.start();
+            LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+            connectionFactory.afterPropertiesSet();
+            connectionFactory.start();
+            redisTemplate = new StringRedisTemplate(connectionFactory);
+        }
+        return redisTemplate;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LaneSchedulerTest {
+
+	private static final Map<JobPriority, Integer> WEIGHTS = Map.of(
+			JobPriority.HIGH, 8, JobPriority.NORMAL, 3, JobPriority.LOW, 1);
+
+	@Test
+	void splitsSlotsByWeightWhenEveryLaneIsBacklogged() {
+		LaneScheduler scheduler = new LaneScheduler(WEIGHTS);
+		Map<JobPriority, Integer> served = new EnumMap<>(JobPriority.class);
+
+		for (int round = 0; round < 10; round++) {
+			List<JobPriority> taken = scheduler.fill(12, (lane, count) -> Collections.nCopies(count, lane));
+			taken.forEach(lane -> served.merge(lane, 1, Integer::sum));
+		}
+
+		assertEquals(80, served.get(JobPriority.HIGH));
+		assertEquals(30, served.get(JobPriority.NORMAL));
+		assertEquals(10, served.get(JobPriority.LOW));
+	}
+
+	@Test
+	void givesUnusedSlotsToLanesThatHaveWork() {
+		LaneScheduler scheduler = new LaneScheduler(WEIGHTS);
+
+		List<JobPriority> taken = scheduler.fill(12, (lane, count) ->
+				lane == JobPriority.LOW ? Collections.nCopies(count, lane) : List.of());
+
+		assertEquals(Collections.nCopies(12, JobPriority.LOW), taken);
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.jobs.JobPriority;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.data.redis.connection.ClusterSlotHashUtil.calculateSlot;
+
+class QueueKeysTest {
+
+	@Test
+	void throttleKeysOfATypeShareASlot() {
+		for (String type : new String[] { "EMAIL", "REPORT", "a:b", "x" }) {
+			assertEquals(calculateSlot(QueueKeys.throttleRate(type)), calculateSlot(QueueKeys.throttleRunning(type)), type);
+		}
+		assertEquals("throttle:rate:{EMAIL}", QueueKeys.throttleRate("EMAIL"));
+		assertEquals("throttle:running:{EMAIL}", QueueKeys.throttleRunning("EMAIL"));
+	}
+
+	@Test
+	void keysOfOneShardShareASlot() {
+		for (JobPriority lane : JobPriority.values()) {
+			String shard = QueueKeys.shard(3, 8);
+			int slot = calculateSlot(QueueKeys.queue(lane, shard));
+			assertEquals(slot, calculateSlot(QueueKeys.stream(lane, shard)), lane.name());
+			assertEquals(slot, calculateSlot(QueueKeys.retry(lane, shard)), lane.name());
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.TestContainers;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.worker.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+// The promotion script against a real Redis: due entries moved in chunks of 1000 (unpack() of a whole large batch
+// overflows the Lua stack), the next due time it returns, and promoteDueRetries calling it until nothing due is left
+// Keys are fixed per lane, every test starts from an empty database
+
+class RetryPromotionTest {
+	private static final String RETRY = QueueKeys.retry(JobPriority.NORMAL, "");
+	private static final String QUEUE = QueueKeys.queue(JobPriority.NORMAL, "");
+	private static final String STREAM = QueueKeys.stream(JobPriority.NORMAL, "");
+
+	private final StringRedisTemplate redis = TestContainers.redis();
+
+	@BeforeEach
+	void emptyRedis() {
+		redis.execute((RedisCallback<Object>) connection -> {
+			connection.serverCommands().flushDb();
+			return null;
+		});
+	}
+
+	@Test
+	void batchFarAboveTheUnpackLimitIsMovedInOneCall() {
+		long now = System.currentTimeMillis();
+		List<String> due = addRetries(10_000, now - 60_000);
+		long later = now + 60_000;
+		redis.opsForZSet().add(RETRY, "later", later);
+
+		long nextDue = listQueue(10_000).promoteDueRetries();
+
+		assertEquals(later, nextDue);
+		assertEquals(due, redis.opsForList().range(QUEUE, 0, -1)); // In retry time order
+		assertEquals(1, redis.opsForZSet().zCard(RETRY));
+	}
+
+	@Test
+	void callsRepeatUntilNothingDueIsLeft() {
+		List<String> due = addRetries(2500, System.currentTimeMillis() - 60_000);
+
+		long nextDue = listQueue(1000).promoteDueRetries(); // Three script calls: 1000, 1000, 500
+
+		assertEquals(-1, nextDue);
+		assertEquals(due, redis.opsForList().range(QUEUE, 0, -1));
+		assertEquals(0, redis.opsForZSet().zCard(RETRY));
+	}
+
+	@Test
+	void nothingDueOnlyReportsTheNextDueTime() {
+		long later = System.currentTimeMillis() + 60_000;
+		redis.opsForZSet().add(RETRY, "later", later);
+
+		assertEquals(later, listQueue(1000).promoteDueRetries());
+		assertEquals(0, redis.opsForList().size(QUEUE));
+		assertEquals(1, redis.opsForZSet().zCard(RETRY));
+	}
+
+	@Test
+	void streamBackendAddsOneEntryPerDueRetry() {
+		addRetries(1500, System.currentTimeMillis() - 60_000);
+		WorkerProperties properties = properties(5000);
+		RedisStreamJobQueue queue = new RedisStreamJobQueue(mock(JobRepository.class), redis, properties, new JobMetrics(new SimpleMeterRegistry()));
+
+		assertEquals(-1, queue.promoteDueRetries());
+		assertEquals(1500, redis.opsForStream().size(STREAM));
+		assertEquals(0, redis.opsForZSet().zCard(RETRY));
+	}
+
+	// count entries due one millisecond apart starting at first, returned in retry time order
+	private List<String> addRetries(int count, long first) {
+		List<String> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ids.add(UUID.randomUUID().toString());
+		}
+		redis.executePipelined((RedisCallback<Object>) connection -> {
+			for (int i = 0; i < count; i++) {
+				connection.zSetCommands().zAdd(RETRY.getBytes(StandardCharsets.UTF_8), first + i, ids.get(i).getBytes(StandardCharsets.UTF_8));
+			}
+			return null;
+		});
+		return ids;
+	}
+
+	private RedisListJobQueue listQueue(int batchSize) {
+		return new RedisListJobQueue(mock(JobRepository.class), redis.getConnectionFactory(), redis, properties(batchSize),
+				new JobMetrics(new SimpleMeterRegistry()));
+	}
+
+	private static WorkerProperties properties(int batchSize) {
+		WorkerProperties properties = new WorkerProperties();
+		properties.setRetryPromotionBatchSize(batchSize);
+		return properties;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.harry.jobworker.queue;
+
+import com.harry.jobworker.TestContainers;
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.jobs.JobRepository;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.worker.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Sharded Redis list queue against a real Redis: jobs land on the shard their ID hashes to, an idle consumer steals
+// from other shards only when its home shard is empty, and retries are promoted back into the job's own shard
+// The repository is a mock that claims whatever IDs it is given
+
+class ShardedQueueTest {
+	private static final int SHARDS = 4;
+
+	private final StringRedisTemplate redis = TestContainers.redis();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private RedisListJobQueue queue;
+	private int home;
+
+	@BeforeEach
+	void setUp() {
+		redis.execute((RedisCallback<Object>) connection -> {
+			connection.serverCommands().flushDb();
+			return null;
+		});
+		JobRepository jobRepository = mock(JobRepository.class);
+		when(jobRepository.claimJobs(anyCollection(), anyString(), anyLong())).thenAnswer(invocation ->
+				invocation.<Collection<String>>getArgument(0).stream().map(id -> new JobEntity(id, "TEST", "")).toList());
+		WorkerProperties properties = new WorkerProperties();
+		properties.setId("worker-1");
+		properties.setQueueShards(SHARDS);
+		queue = new RedisListJobQueue(jobRepository, redis.getConnectionFactory(), redis, properties, new JobMetrics(meterRegistry));
+		home = queue.homeShard(); // This thread is the consumer
+	}
+
+	@AfterEach
+	void closeConnections() {
+		queue.closeConnections();
+	}
+
+	@Test
+	void jobOnAnotherShardIsStolenWhenHomeIsEmpty() {
+		String jobId = jobIdOnShard(otherShard());
+		queue.enqueue(JobPriority.NORMAL, List.of(jobId));
+
+		assertEquals(1, redis.opsForList().size(QueueKeys.queue(JobPriority.NORMAL, QueueKeys.shard(otherShard(), SHARDS))));
+		List<JobEntity> claimed = queue.claimBatch(10, Duration.ofSeconds(1));
+
+		assertEquals(List.of(jobId), claimed.stream().map(JobEntity::getId).toList());
+		assertEquals(1.0, meterRegistry.counter("jobs.queue.stolen").count());
+	}
+
+	@Test
+	void homeShardIsServedBeforeStealing() {
+		String homeJob = jobIdOnShard(home);
+		String otherJob = jobIdOnShard(otherShard());
+		queue.enqueue(JobPriority.NORMAL, List.of(homeJob, otherJob));
+
+		List<JobEntity> claimed = queue.claimBatch(10, Duration.ofSeconds(1));
+
+		assertEquals(List.of(homeJob), claimed.stream().map(JobEntity::getId).toList());
+		assertEquals(1, redis.opsForList().size(QueueKeys.queue(JobPriority.NORMAL, QueueKeys.shard(otherShard(), SHARDS))));
+		assertEquals(0.0, meterRegistry.counter("jobs.queue.stolen").count());
+	}
+
+	@Test
+	void retryGoesBackToTheJobsOwnShard() {
+		String jobId = jobIdOnShard(otherShard());
+		String shard = QueueKeys.shard(otherShard(), SHARDS);
+
+		queue.scheduleRetry(new JobEntity(jobId, "TEST", ""), System.currentTimeMillis() - 1);
+		assertEquals(1, redis.opsForZSet().zCard(QueueKeys.retry(JobPriority.NORMAL, shard)));
+		queue.promoteDueRetries();
+
+		assertEquals(List.of(jobId), redis.opsForList().range(QueueKeys.queue(JobPriority.NORMAL, shard), 0, -1));
+		for (int other = 0; other < SHARDS; other++) {
+			if (other != otherShard()) {
+				assertEquals(0, redis.opsForList().size(QueueKeys.queue(JobPriority.NORMAL, QueueKeys.shard(other, SHARDS))));
+			}
+		}
+	}
+
+	private int otherShard() {
+		int other = (home + 1) % SHARDS;
+		assertNotEquals(home, other);
+		return other;
+	}
+
+	private static String jobIdOnShard(int shard) {
+		while (true) {
+			String jobId = UUID.randomUUID().toString();
+			if (QueueKeys.shardOf(jobId, SHARDS) == shard) {
+				return jobId;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.TestContainers;
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.jobs.JobPriority;
+import com.harry.jobworker.metrics.JobMetrics;
+import com.harry.jobworker.queue.JobQueue;
+import com.harry.jobworker.queue.JobStatusCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.InflaterInputStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+// CompletionBatcher's COMPLETE_CTE against Postgres: guarded batch completion, pending_parents countdown,
+// release of WAITING children with their outbox rows, the push of due children once the batch committed,
+// and the job_results rows written in the same transaction
+
+class CompletionBatcherTest {
+	private static final String WORKER = "worker-1";
+
+	private final DataSource dataSource = TestContainers.postgres();
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+	private final JobQueue jobQueue = mock(JobQueue.class);
+	private CompletionBatcher batcher;
+
+	@AfterEach
+	void stopBatcher() throws InterruptedException {
+		if (batcher != null) {
+			batcher.shutdown();
+		}
+	}
+
+	@Test
+	void completingAParentReleasesOnlyChildrenWithNoParentLeft() {
+		batcher = batcher("redis", Duration.ofMillis(5));
+		String a = insertRunning(WORKER);
+		String b = insertRunning(WORKER);
+		String both = insertWaiting(2, JobPriority.NORMAL, Instant.now(), a, b);
+		String onlyA = insertWaiting(1, JobPriority.HIGH, Instant.now(), a);
+
+		assertTrue(batcher.complete(job(a)));
+
+		assertEquals("COMPLETED", status(a));
+		assertEquals("PENDING", status(onlyA));
+		assertEquals("WAITING", status(both));
+		assertEquals(1, pendingParents(both));
+		verify(jobQueue, timeout(2000)).enqueue(JobPriority.HIGH, List.of(onlyA));
+		await().atMost(Duration.ofSeconds(2)).until(() -> outboxRows(onlyA) == 0); // Pushed straight away, the relay has nothing left to do
+
+		assertTrue(batcher.complete(job(b)));
+
+		assertEquals("PENDING", status(both));
+		assertEquals(0, pendingParents(both));
+		assertEquals(0, dependencies(a) + dependencies(b));
+		verify(jobQueue, timeout(2000)).enqueue(JobPriority.NORMAL, List.of(both));
+	}
+
+	@Test
+	void parentsCompletedInOneBatchReleaseTheirChildOnce() {
+		batcher = batcher("redis", Duration.ofMillis(200)); // Long enough for both completions to share a flush
+		String a = insertRunning(WORKER);
+		String b = insertRunning(WORKER);
+		String child = insertWaiting(2, JobPriority.NORMAL, Instant.now(), a, b);
+
+		CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> batcher.complete(job(a)));
+		CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> batcher.complete(job(b)));
+
+		assertTrue(first.join());
+		assertTrue(second.join());
+		assertEquals("PENDING", status(child));
+		verify(jobQueue, after(500).times(1)).enqueue(eq(JobPriority.NORMAL), anyList());
+		verify(jobQueue).enqueue(JobPriority.NORMAL, List.of(child));
+	}
+
+	@Test
+	void scheduledChildIsLeftToTheOutboxRelay() {
+		batcher = batcher("redis", Duration.ofMillis(5));
+		String parent = insertRunning(WORKER);
+		String child = insertWaiting(1, JobPriority.NORMAL, Instant.now().plus(Duration.ofHours(1)), parent);
+
+		assertTrue(batcher.complete(job(parent)));
+
+		assertEquals("PENDING", status(child));
+		verify(jobQueue, after(300).never()).enqueue(eq(JobPriority.NORMAL), anyList());
+		assertEquals(1, outboxRows(child));
+	}
+
+	@Test
+	void postgresBackendReleasesWithoutOutboxRows() {
+		batcher = batcher("postgres", Duration.ofMillis(5));
+		String parent = insertRunning(WORKER);
+		String child = insertWaiting(1, JobPriority.LOW, Instant.now(), parent);
+
+		assertTrue(batcher.complete(job(parent)));
+
+		assertEquals("PENDING", status(child));
+		assertEquals(0, outboxRows(child));
+		verify(jobQueue, timeout(2000)).enqueue(JobPriority.LOW, List.of(child));
+	}
+
+	@Test
+	void jobLeasedToAnotherWorkerIsNotCompletedAndReleasesNothing() {
+		batcher = batcher("redis", Duration.ofMillis(5));
+		String parent = insertRunning("worker-2");
+		String child = insertWaiting(1, JobPriority.NORMAL, Instant.now(), parent);
+
+		assertFalse(batcher.complete(job(parent)));
+
+		assertEquals("IN_PROGRESS", status(parent));
+		assertEquals("WAITING", status(child));
+		assertEquals(1, dependencies(parent));
+		verify(jobQueue, after(300).never()).enqueue(eq(JobPriority.NORMAL), anyList());
+	}
+
+	@Test
+	void resultIsStoredAsIsUpToTheThresholdAndDeflatedAbove() throws IOException {
+		batcher = batcher("redis", Duration.ofMillis(5));
+		String small = insertRunning(WORKER);
+		String large = insertRunning(WORKER);
+		String largeResult = "{\"row\":42}".repeat(500); // Over the default 1024 byte threshold
+
+		assertTrue(batcher.complete(job(small), "{\"ok\":true}"));
+		assertTrue(batcher.complete(job(large), largeResult));
+
+		assertEquals("identity", resultColumn(small, "encoding"));
+		assertEquals("{\"ok\":true}", new String(resultData(small), StandardCharsets.UTF_8));
+		assertEquals("deflate", resultColumn(large, "encoding"));
+		assertEquals(String.valueOf(largeResult.length()), resultColumn(large, "size"));
+		assertEquals(largeResult, new String(new InflaterInputStream(new ByteArrayInputStream(resultData(large))).readAllBytes(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void resultOfAJobThatWasNotCompletedIsNotStored() {
+		batcher = batcher("redis", Duration.ofMillis(5));
+		String lost = insertRunning("worker-2");
+
+		assertFalse(batcher.complete(job(lost), "{\"ok\":true}"));
+
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM job_results WHERE job_id = ?", Integer.class, lost));
+	}
+
+	private CompletionBatcher batcher(String queueBackend, Duration flushInterval) {
+		WorkerProperties properties = new WorkerProperties();
+		properties.setId(WORKER);
+		properties.setQueueBackend(queueBackend);
+		properties.setCompletionFlushInterval(flushInterval);
+		JobMetrics metrics = new JobMetrics(new SimpleMeterRegistry());
+		return new CompletionBatcher(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)), jobQueue,
+				mock(JobStatusCache.class), properties, metrics);
+	}
+
+	// IN_PROGRESS on its first attempt, leased to owner
+	private String insertRunning(String owner) {
+		String id = UUID.randomUUID().toString();
+		jdbcTemplate.update("""
+				INSERT INTO jobs (id, type, payload, status, attempts, priority, created_at, available_at, lease_owner, lease_expires_at)
+				VALUES (?, 'TEST', '', 'IN_PROGRESS', 0, 'NORMAL', now(), now(), ?, now() + interval '30 seconds')
+				""", id, owner);
+		return id;
+	}
+
+	private String insertWaiting(int pendingParents, JobPriority priority, Instant availableAt, String... parents) {
+		String id = UUID.randomUUID().toString();
+		jdbcTemplate.update("""
+				INSERT INTO jobs (id, type, payload, status, attempts, priority, created_at, available_at, pending_parents)
+				VALUES (?, 'TEST', '', 'WAITING', 0, ?, now(), ?, ?)
+				""", id, priority.name(), Timestamp.from(availableAt), pendingParents);
+		for (String parent : parents) {
+			jdbcTemplate.update("INSERT INTO job_dependencies (parent_id, child_id) VALUES (?, ?)", parent, id);
+		}
+		return id;
+	}
+
+	private static JobEntity job(String id) {
+		return new JobEntity(id, "TEST", ""); // attempts 0, as claimed
+	}
+
+	private String status(String id) {
+		return jdbcTemplate.queryForObject("SELECT status FROM jobs WHERE id = ?", String.class, id);
+	}
+
+	private int pendingParents(String id) {
+		return jdbcTemplate.queryForObject("SELECT pending_parents FROM jobs WHERE id = ?", Integer.class, id);
+	}
+
+	private int dependencies(String parentId) {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM job_dependencies WHERE parent_id = ?", Integer.class, parentId);
+	}
+
+	private String resultColumn(String jobId, String column) {
+		return jdbcTemplate.queryForObject("SELECT " + column + "::text FROM job_results WHERE job_id = ?", String.class, jobId);
+	}
+
+	private byte[] resultData(String jobId) {
+		return jdbcTemplate.queryForObject("SELECT data FROM job_results WHERE job_id = ?", byte[].class, jobId);
+	}
+
+	private int outboxRows(String jobId) {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM job_outbox WHERE job_id = ?", Integer.class, jobId);
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.harry.jobworker.worker;
+
+import com.harry.jobworker.TestContainers;
+import com.harry.jobworker.jobs.JobEntity;
+import com.harry.jobworker.metrics.JobMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+// TypeThrottle's ACQUIRE_SCRIPT against a real Redis: token bucket, running set cap and slot expiry
+// Every test uses a type of its own, so the Redis keys never overlap
+
+class TypeThrottleTest {
+	private static final long RETRY_DELAY = 250;
+
+	@Test
+	void tokenBucketAllowsBurstThenWaitsForTheNextToken() throws Exception {
+		String type = newType();
+		TypeThrottle throttle = throttle(type, limit(20, 2, 0), Duration.ofSeconds(30));
+
+		assertEquals(0, throttle.tryAcquire(job(type)));
+		assertEquals(0, throttle.tryAcquire(job(type)));
+		long wait = throttle.tryAcquire(job(type));
+		assertTrue(wait > 0 && wait <= 100, "wait " + wait); // Next token within 50ms, plus up to one token interval of jitter
+
+		Thread.sleep(120);
+		assertEquals(0, throttle.tryAcquire(job(type)));
+	}
+
+	@Test
+	void runningSetCapsConcurrencyUntilASlotIsReleased() {
+		String type = newType();
+		TypeThrottle throttle = throttle(type, limit(0, 1, 2), Duration.ofSeconds(30));
+		JobEntity first = job(type);
+
+		assertEquals(0, throttle.tryAcquire(first));
+		assertEquals(0, throttle.tryAcquire(job(type)));
+		JobEntity third = job(type);
+		assertEquals(RETRY_DELAY, throttle.tryAcquire(third));
+
+		throttle.release(first);
+		assertEquals(0, throttle.tryAcquire(third));
+	}
+
+	@Test
+	void slotsExpireUnlessRenewed() throws Exception {
+		String type = newType();
+		TypeThrottle throttle = throttle(type, limit(0, 1, 1), Duration.ofMillis(300));
+
+		assertEquals(0, throttle.tryAcquire(job(type)));
+		Thread.sleep(200);
+		throttle.renew(); // Pushed out to now + 300ms
+		Thread.sleep(200);
+		assertEquals(RETRY_DELAY, throttle.tryAcquire(job(type)));
+
+		Thread.sleep(400); // No renewal, as if the worker holding it died
+		assertEquals(0, throttle.tryAcquire(job(type)));
+	}
+
+	private static TypeThrottle throttle(String type, WorkerProperties.TypeLimit limit, Duration leaseDuration) {
+		WorkerProperties properties = new WorkerProperties();
+		properties.setTypeLimits(Map.of(type, limit));
+		properties.setLeaseDuration(leaseDuration);
+		properties.setTypeLimitRetryDelay(Duration.ofMillis(RETRY_DELAY));
+		return new TypeThrottle(TestContainers.redis(), mock(TaskScheduler.class), properties, new JobMetrics(new SimpleMeterRegistry()));
+	}
+
+	private static WorkerProperties.TypeLimit limit(double rate, int burst, int maxConcurrency) {
+		WorkerProperties.TypeLimit limit = new WorkerProperties.TypeLimit();
+		limit.setRate(rate);
+		limit.setBurst(burst);
+		limit.setMaxConcurrency(maxConcurrency);
+		return limit;
+	}
+
+	private static JobEntity job(String type) {
+		return new JobEntity(UUID.randomUUID().toString(), type, "");
+	}
+
+	private static String newType() {
+		return "T" + UUID.randomUUID();
+	}
+
+}